@@ -16,7 +16,8 @@ public class Bullet extends GameObject {
 
 	private static List<PVector> bulletPolygon = Polygons
 			.makeRegularPolygon(new PVector(BULLET_DIAMETER, BULLET_DIAMETER), 26);
-	private RigidBody bulletBody = new RigidBody(BULLET_MASS, new CollisionMesh(new PVector(), bulletPolygon, null));
+	private RigidBody bulletBody = new RigidBody(BULLET_MASS,
+			new CollisionMesh(new PVector(), BULLET_DIAMETER / 2, null));
 	private PVector startPosition;
 
 	public RigidBody getRigidBody() {
@@ -35,6 +36,7 @@ public class Bullet extends GameObject {
 		super(new PVector(BULLET_DIAMETER, BULLET_DIAMETER), position, false,
 				new VisualPolygon(new PVector(), bulletPolygon, 255));
 		attach(bulletBody);
+		bulletBody.setContinuous(true);
 		startPosition = position.copy();
 		bulletBody.applyImpulse(PVector.mult(PVector.fromAngle(angle), (intensity / 100f) * MAX_VELOCITY), position,
 				null, false);
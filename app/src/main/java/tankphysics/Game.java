@@ -13,7 +13,6 @@ import tankphysics.engine.Director;
 import tankphysics.engine.EngineEventListener;
 import tankphysics.engine.Force;
 import tankphysics.engine.GameObject;
-import tankphysics.engine.PhysicalObject;
 import tankphysics.engine.Polygons;
 import tankphysics.engine.RigidBody;
 import tankphysics.engine.Surfaces;
@@ -289,13 +288,11 @@ public class Game {
 		engineDirector.attach(boundaries);
 		engineDirector.attach(tankBoundaries);
 
-		// Remove collisions for tank boundaries
+		// Tank boundaries only collide with tanks.
 		for (GameObject t : tankBoundaries) {
 			for (Component c : t.getComponents()) {
 				if (c instanceof CollisionMesh) {
-					engineDirector.removeCollisionsForAllBut((PhysicalObject) c, redTank.getRigidBody(),
-							blueTank.getRigidBody());
-					((CollisionMesh) c).setProperties(Map.ofEntries(Map.entry("add_for_collisions", 0.0f)));
+					((CollisionMesh) c).setCollisionFilter(Tank.TANK_BOUNDARY_CATEGORY, Tank.TANK_CATEGORY, 0);
 				}
 			}
 		}
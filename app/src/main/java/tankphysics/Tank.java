@@ -9,6 +9,7 @@ import tankphysics.engine.CollisionMesh;
 import tankphysics.engine.Director;
 import tankphysics.engine.EngineEventListener;
 import tankphysics.engine.GameObject;
+import tankphysics.engine.PhysicalObject;
 import tankphysics.engine.Polygons;
 import tankphysics.engine.RigidBody;
 import tankphysics.engine.VisualPolygon;
@@ -20,14 +21,22 @@ public class Tank extends GameObject {
 	// Tank constants
 	private static final List<PVector> belly = Arrays.asList(new PVector(-0.75f, -0.5f), new PVector(0.75f, -0.5f),
 			new PVector(0.5f, 0.5f), new PVector(-0.5f, 0.5f));
-	private static final List<PVector> hull = Polygons.makeRegularPolygon(new PVector(1, 1), 16, 0,
-			new PVector(0, -0.625f));
+	private static final float HULL_DIAMETER = 1;
+	private static final PVector HULL_CENTER = new PVector(0, -0.625f);
+	private static final List<PVector> hull = Polygons.makeRegularPolygon(new PVector(HULL_DIAMETER, HULL_DIAMETER),
+			16, 0, HULL_CENTER);
 	private static final float MAX_TANK_MASS = 50;
 	private static final float MAX_STRENGTH = 100;
 
+	// Collision categories - tank boundaries only collide with tanks.
+	static final int TANK_CATEGORY = 0x0002;
+	static final int TANK_BOUNDARY_CATEGORY = 0x0004;
+	private static int lastCollisionGroup = 0;
+
 	// GameObject bomponents
 	private CollisionMesh bellyMesh = new CollisionMesh(new PVector(), belly, null);
-	private RigidBody tankBody = new RigidBody(MAX_TANK_MASS, bellyMesh, new CollisionMesh(new PVector(), hull, null));
+	private RigidBody tankBody = new RigidBody(MAX_TANK_MASS, bellyMesh,
+			new CollisionMesh(HULL_CENTER, HULL_DIAMETER / 2, null));
 	private Nozzle nozzle;
 	private float intensity;
 	private float tankPercentage = 0.0f;
@@ -253,6 +262,8 @@ public class Tank extends GameObject {
 		super(new PVector(1.5f, 2.125f), position, false, new VisualPolygon(new PVector(), belly, color),
 				new VisualPolygon(new PVector(), hull, color));
 		this.attach(tankBody);
+		// Each tank gets its own negative group, so it never collides with its bullets.
+		tankBody.setCollisionFilter(TANK_CATEGORY, PhysicalObject.ALL_COLLISION_CATEGORIES, --lastCollisionGroup);
 		nozzle = new Nozzle(position, color);
 		this.addChild(nozzle, new PVector(0, -0.750f));
 		attachEventListener("onHit", getTankBulletOnHitListener(bar));
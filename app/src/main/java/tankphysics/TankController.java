@@ -12,11 +12,11 @@ public interface TankController {
 	public static void shootProjectile(Tank tank, Game game) {
 		Bullet bullet = tank.spawnProjectile();
 		if (bullet != null) {
+			bullet.getRigidBody().setCollisionGroup(tank.getRigidBody().getCollisionGroup());
 			game.engineDirector.attach(bullet);
 			bullet.attachEventListener("onHit", game.getBulletOnHitListener(bullet));
 			game.currentBullet = bullet;
 			game.engineDirector.attachEventListener("update", game.getBulletUpdateListener(bullet));
-			game.engineDirector.removeCollisions(bullet.getRigidBody(), tank.getRigidBody());
 		}
 	}
 
@@ -0,0 +1,146 @@
+package tankphysics.engine;
+
+/**
+ * Class representing an axis-aligned bounding box in world space. Bounds are
+ * kept as primitive fields so they can be updated in place.
+ */
+public class AABB {
+	float minX;
+	float minY;
+	float maxX;
+	float maxY;
+
+	/////////////////////////
+	// Getters and Setters //
+	/////////////////////////
+
+	public float getMinX() {
+		return minX;
+	}
+
+	public float getMinY() {
+		return minY;
+	}
+
+	public float getMaxX() {
+		return maxX;
+	}
+
+	public float getMaxY() {
+		return maxY;
+	}
+
+	public void set(float minX, float minY, float maxX, float maxY) {
+		this.minX = minX;
+		this.minY = minY;
+		this.maxX = maxX;
+		this.maxY = maxY;
+	}
+
+	public void set(AABB other) {
+		set(other.minX, other.minY, other.maxX, other.maxY);
+	}
+
+	/**
+	 * Set the bounds to the cached world bounds of a physical object.
+	 *
+	 * @param obj The physical object to take the bounds from.
+	 */
+	public void setFrom(PhysicalObject obj) {
+		set(obj.getBounds());
+	}
+
+	//////////////////
+	// AABB Methods //
+	//////////////////
+
+	/**
+	 * Check whether this box strictly overlaps another box. Boxes that only touch
+	 * on an edge are not overlapping.
+	 *
+	 * @param other The box to check against.
+	 *
+	 * @return Whether both boxes overlap.
+	 */
+	public boolean overlaps(AABB other) {
+		return minX < other.maxX && other.minX < maxX && minY < other.maxY && other.minY < maxY;
+	}
+
+	/**
+	 * Get the distance along a ray at which it enters this box.
+	 *
+	 * @param originX     The x coordinate of the ray's origin.
+	 * @param originY     The y coordinate of the ray's origin.
+	 * @param dirX        The x coordinate of the ray's normalized direction.
+	 * @param dirY        The y coordinate of the ray's normalized direction.
+	 * @param maxDistance The maximum distance the ray travels.
+	 *
+	 * @return The distance at which the ray enters the box, 0 if the origin is in
+	 *         the box, or -1 if the ray doesn't hit the box.
+	 */
+	public float rayCast(float originX, float originY, float dirX, float dirY, float maxDistance) {
+		return rayCast(minX, minY, maxX, maxY, originX, originY, dirX, dirY, maxDistance);
+	}
+
+	/**
+	 * Get the distance along a ray at which it enters the given bounds, using the
+	 * slab method.
+	 *
+	 * @return The distance at which the ray enters the bounds, or -1 if the ray
+	 *         doesn't hit them.
+	 */
+	public static float rayCast(float minX, float minY, float maxX, float maxY, float originX, float originY,
+			float dirX, float dirY, float maxDistance) {
+		float tMin = 0;
+		float tMax = maxDistance;
+
+		// X slab
+		if (dirX == 0) {
+			if (originX < minX || originX > maxX) {
+				return -1;
+			}
+		} else {
+			float inverse = 1 / dirX;
+			float t1 = (minX - originX) * inverse;
+			float t2 = (maxX - originX) * inverse;
+			tMin = Math.max(tMin, Math.min(t1, t2));
+			tMax = Math.min(tMax, Math.max(t1, t2));
+			if (tMin > tMax) {
+				return -1;
+			}
+		}
+
+		// Y slab
+		if (dirY == 0) {
+			if (originY < minY || originY > maxY) {
+				return -1;
+			}
+		} else {
+			float inverse = 1 / dirY;
+			float t1 = (minY - originY) * inverse;
+			float t2 = (maxY - originY) * inverse;
+			tMin = Math.max(tMin, Math.min(t1, t2));
+			tMax = Math.min(tMax, Math.max(t1, t2));
+			if (tMin > tMax) {
+				return -1;
+			}
+		}
+		return tMin;
+	}
+
+	@Override
+	public String toString() {
+		return "AABB: [" + minX + "," + minY + "] -> [" + maxX + "," + maxY + "]";
+	}
+
+	//////////////////
+	// Constructors //
+	//////////////////
+
+	public AABB() {
+	}
+
+	public AABB(float minX, float minY, float maxX, float maxY) {
+		set(minX, minY, maxX, maxY);
+	}
+}
@@ -0,0 +1,170 @@
+package tankphysics.engine;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+/**
+ * Dense store of the dynamic state of rigid bodies - velocity, angular
+ * velocity, inverse mass, inverse inertia and sleep state - in parallel arrays
+ * indexed by body slot, along with the forces applied to each body. Rigid
+ * bodies are handles to a slot of a store, and keep none of this state
+ * themselves.
+ *
+ * A body outside of a director has a store of its own. Adding it to a director's
+ * store moves its state over, and removing it moves the state of the last body
+ * to the freed slot, so slots stay packed.
+ */
+class BodyStore {
+	RigidBody[] bodies;
+	float[] velocityX, velocityY;
+	float[] angularVelocity;
+	float[] inverseMass;
+	float[] inverseInertia;
+	boolean[] awake;
+	float[] sleepTime;
+	private ArrayList<LinkedHashSet<Force>> forces = new ArrayList<>();
+	private int size = 0;
+
+	/////////////////////////
+	// Getters and Setters //
+	/////////////////////////
+
+	public int size() {
+		return size;
+	}
+
+	public boolean contains(RigidBody body) {
+		return body.store == this;
+	}
+
+	/**
+	 * Get the forces applied to the body in a slot.
+	 */
+	public LinkedHashSet<Force> getForces(int slot) {
+		return forces.get(slot);
+	}
+
+	/**
+	 * Get a read-only view of the bodies in the store, in slot order.
+	 */
+	public List<RigidBody> asList() {
+		return new AbstractList<RigidBody>() {
+			public RigidBody get(int i) {
+				return bodies[i];
+			}
+
+			public int size() {
+				return size;
+			}
+		};
+	}
+
+	////////////////////////
+	// Body Store Methods //
+	////////////////////////
+
+	/**
+	 * Move a rigid body to the end of the store, with its current state.
+	 *
+	 * @param body   The body to add.
+	 * @param forces The forces applied to the body.
+	 */
+	public void add(RigidBody body, LinkedHashSet<Force> forces) {
+		ensureCapacity(size + 1);
+		int slot = size++;
+		copy(body.store, body.slot, this, slot);
+		bodies[slot] = body;
+		this.forces.add(forces);
+		body.store = this;
+		body.slot = slot;
+	}
+
+	/**
+	 * Remove a rigid body from the store, moving its state to a store of its own.
+	 * The last body of the store takes its slot.
+	 *
+	 * @param body The body to remove.
+	 */
+	public void remove(RigidBody body) {
+		int slot = body.slot;
+		isolate(body);
+
+		int last = --size;
+		if (slot != last) {
+			copy(this, last, this, slot);
+			bodies[slot] = bodies[last];
+			bodies[slot].slot = slot;
+			forces.set(slot, forces.get(last));
+		}
+		bodies[last] = null;
+		forces.remove(last);
+	}
+
+	/**
+	 * Move a rigid body to a store of its own, with its current state if it has
+	 * one. New bodies start awake, at rest.
+	 *
+	 * @param body The body to move.
+	 */
+	static void isolate(RigidBody body) {
+		BodyStore own = new BodyStore(1);
+		own.bodies[0] = body;
+		own.forces.add(new LinkedHashSet<>());
+		own.awake[0] = true;
+		own.size = 1;
+		if (body.store != null) {
+			copy(body.store, body.slot, own, 0);
+		}
+		body.store = own;
+		body.slot = 0;
+	}
+
+	// Copy the state of a slot to a slot of another store.
+	private static void copy(BodyStore from, int fromSlot, BodyStore to, int toSlot) {
+		to.velocityX[toSlot] = from.velocityX[fromSlot];
+		to.velocityY[toSlot] = from.velocityY[fromSlot];
+		to.angularVelocity[toSlot] = from.angularVelocity[fromSlot];
+		to.inverseMass[toSlot] = from.inverseMass[fromSlot];
+		to.inverseInertia[toSlot] = from.inverseInertia[fromSlot];
+		to.awake[toSlot] = from.awake[fromSlot];
+		to.sleepTime[toSlot] = from.sleepTime[fromSlot];
+	}
+
+	private void ensureCapacity(int capacity) {
+		if (capacity <= bodies.length) {
+			return;
+		}
+		int length = Math.max(capacity, bodies.length * 2);
+		bodies = Arrays.copyOf(bodies, length);
+		velocityX = Arrays.copyOf(velocityX, length);
+		velocityY = Arrays.copyOf(velocityY, length);
+		angularVelocity = Arrays.copyOf(angularVelocity, length);
+		inverseMass = Arrays.copyOf(inverseMass, length);
+		inverseInertia = Arrays.copyOf(inverseInertia, length);
+		awake = Arrays.copyOf(awake, length);
+		sleepTime = Arrays.copyOf(sleepTime, length);
+	}
+
+	/////////////////
+	// Constructor //
+	/////////////////
+
+	/**
+	 * Constructor for an empty body store.
+	 *
+	 * @param capacity The number of bodies to make room for.
+	 */
+	public BodyStore(int capacity) {
+		bodies = new RigidBody[capacity];
+		velocityX = new float[capacity];
+		velocityY = new float[capacity];
+		angularVelocity = new float[capacity];
+		inverseMass = new float[capacity];
+		inverseInertia = new float[capacity];
+		awake = new boolean[capacity];
+		sleepTime = new float[capacity];
+	}
+}
@@ -0,0 +1,121 @@
+package tankphysics.engine;
+
+import java.util.List;
+import java.util.function.BiConsumer;
+
+/**
+ * Interface for broadphase structures, used by the Director to find the pairs
+ * of physical objects that may be colliding before running the narrowphase.
+ */
+public interface Broadphase {
+
+	/**
+	 * Callback for objects found by a ray cast through the broadphase.
+	 */
+	public interface RayCastCallback {
+		/**
+		 * Call the callback for an object whose bounds are crossed by the ray.
+		 *
+		 * @param obj         The object crossed by the ray.
+		 * @param maxDistance The current maximum distance of the ray.
+		 *
+		 * @return The new maximum distance of the ray - objects further away are
+		 *         skipped. Returning 0 stops the ray cast.
+		 */
+		public float call(PhysicalObject obj, float maxDistance);
+	}
+
+	///////////////////////
+	// Interface Methods //
+	///////////////////////
+
+	public boolean contains(PhysicalObject obj);
+
+	/**
+	 * Get the bounds the broadphase holds for an object.
+	 *
+	 * @param obj The object to get the bounds of.
+	 *
+	 * @return The object's bounds, or null if the object isn't in the broadphase.
+	 */
+	public AABB getBounds(PhysicalObject obj);
+
+	/**
+	 * Add a physical object to the broadphase.
+	 *
+	 * @param obj The physical object to add.
+	 */
+	public void add(PhysicalObject obj);
+
+	/**
+	 * Remove a physical object from the broadphase.
+	 *
+	 * @param obj The physical object to remove.
+	 */
+	public void remove(PhysicalObject obj);
+
+	/**
+	 * Refresh the bounds of every moving object in the broadphase.
+	 */
+	public void update();
+
+	/**
+	 * Refresh the bounds of a single object, moving or not.
+	 *
+	 * @param obj The object to refresh the bounds of.
+	 */
+	public void update(PhysicalObject obj);
+
+	/**
+	 * Report every pair of overlapping objects where at least one of them is
+	 * moving. Each pair is reported once.
+	 *
+	 * @param callback The callback called for each overlapping pair.
+	 */
+	public void findPairs(BiConsumer<PhysicalObject, PhysicalObject> callback);
+
+	/**
+	 * Get all objects overlapping the current bounds of a given object.
+	 *
+	 * @param obj The object to query against. Its bounds are refreshed first.
+	 *
+	 * @return The list of objects overlapping the given object.
+	 */
+	public List<PhysicalObject> query(PhysicalObject obj);
+
+	/**
+	 * Get all objects overlapping a given area.
+	 *
+	 * @param area The area to query.
+	 *
+	 * @return The list of objects overlapping the area.
+	 */
+	public List<PhysicalObject> query(AABB area);
+
+	/**
+	 * Cast a ray through the broadphase, calling the callback for each object
+	 * whose bounds are crossed by the ray. Objects are not reported in order.
+	 *
+	 * @param originX     The x coordinate of the ray's origin.
+	 * @param originY     The y coordinate of the ray's origin.
+	 * @param dirX        The x coordinate of the ray's normalized direction.
+	 * @param dirY        The y coordinate of the ray's normalized direction.
+	 * @param maxDistance The maximum distance the ray travels.
+	 * @param callback    The callback called for each crossed object.
+	 */
+	public default void rayCast(float originX, float originY, float dirX, float dirY, float maxDistance,
+			RayCastCallback callback) {
+		float endX = originX + dirX * maxDistance;
+		float endY = originY + dirY * maxDistance;
+		AABB rayBounds = new AABB(Math.min(originX, endX), Math.min(originY, endY), Math.max(originX, endX),
+				Math.max(originY, endY));
+		for (PhysicalObject obj : query(rayBounds)) {
+			if (getBounds(obj).rayCast(originX, originY, dirX, dirY, maxDistance) >= 0) {
+				maxDistance = callback.call(obj, maxDistance);
+				if (maxDistance <= 0) {
+					return;
+				}
+			}
+		}
+	}
+}
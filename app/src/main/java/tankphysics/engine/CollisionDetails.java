@@ -1,36 +1,191 @@
 package tankphysics.engine;
 
-import java.util.List;
-
 import processing.core.PVector;
 
 /**
- * Class representing collision details between 2 objects. The normal belongs to
- * object A, as the affect point belongs to object B.
+ * Class representing the contact manifold between 2 colliding meshes. The normal
+ * is the outward normal of the reference face on object A, pointing towards
+ * object B. Contact points lie halfway between the incident face of object B and
+ * the reference face, and are tagged with feature ids so contacts can be matched
+ * from one frame to the next. Manifolds are meant to be reused between
+ * collision checks.
  */
 public class CollisionDetails {
-	PVector normal;
-	List<PVector> affectPoints;
+	public static final int MAX_POINTS = 2;
+
+	// Feature types, for feature ids
+	static final int FEATURE_VERTEX = 0;
+	static final int FEATURE_FACE = 1;
+
+	PVector normal = new PVector();
+	PVector[] points = new PVector[] { new PVector(), new PVector() };
+	float[] separations = new float[MAX_POINTS];
+	int[] featureIds = new int[MAX_POINTS];
+	float[] normalImpulses = new float[MAX_POINTS];
+	float[] tangentImpulses = new float[MAX_POINTS];
+	int numPoints = 0;
 	float penetration;
 	PhysicalObject objA;
 	PhysicalObject objB;
 	CollisionMesh meshA;
 	CollisionMesh meshB;
 
-	@Override
-	public String toString() {
-		return "Collision details: {\n\tobject A: " + objA + ", \n\tobject B: " + objB + ",\n\tnormal: [" + normal.x
-				+ "," + normal.y + "],\n\tpenetration: " + penetration + ",\n}";
+	// The meshes the manifold is kept for, in the order they were paired in -
+	// unlike meshA and meshB, which are swapped with the reference face.
+	CollisionMesh pairMeshA;
+	CollisionMesh pairMeshB;
+
+	// Separating axis cache - the face that separated the meshes or was the
+	// reference face on the last check.
+	CollisionMesh cachedMesh;
+	int cachedEdge;
+
+	// Simplex of the last distance query between the meshes, to warm start the next.
+	SimplexCache simplex = new SimplexCache();
+
+	// Contact points of the last check, to warm start the contact solver.
+	private int lastNumPoints = 0;
+	private int[] lastFeatureIds = new int[MAX_POINTS];
+	private float[] lastNormalImpulses = new float[MAX_POINTS];
+	private float[] lastTangentImpulses = new float[MAX_POINTS];
+
+	/////////////////////////
+	// Getters and Setters //
+	/////////////////////////
+
+	public PVector getNormal() {
+		return normal;
 	}
 
-	public CollisionDetails(float dist, PhysicalObject objA, PhysicalObject objB, CollisionMesh meshA,
-			CollisionMesh meshB, PVector normal, List<PVector> affectPoints) {
-		this.penetration = dist;
+	public int getNumPoints() {
+		return numPoints;
+	}
+
+	public PVector getPoint(int i) {
+		return points[i];
+	}
+
+	public float getSeparation(int i) {
+		return separations[i];
+	}
+
+	public int getFeatureId(int i) {
+		return featureIds[i];
+	}
+
+	public float getPenetration() {
+		return penetration;
+	}
+
+	/**
+	 * Get the normal impulse the contact solver accumulated at a contact point on
+	 * the last step.
+	 */
+	public float getNormalImpulse(int i) {
+		return normalImpulses[i];
+	}
+
+	/**
+	 * Get the friction impulse the contact solver accumulated at a contact point
+	 * on the last step.
+	 */
+	public float getTangentImpulse(int i) {
+		return tangentImpulses[i];
+	}
+
+	/**
+	 * Clear the contact points of the manifold before a new collision check,
+	 * keeping them aside to match their impulses to the new points.
+	 */
+	void clearPoints() {
+		for (int i = 0; i < numPoints; i++) {
+			lastFeatureIds[i] = featureIds[i];
+			lastNormalImpulses[i] = normalImpulses[i];
+			lastTangentImpulses[i] = tangentImpulses[i];
+		}
+		lastNumPoints = numPoints;
+		numPoints = 0;
+	}
+
+	/**
+	 * Give each contact point the impulses of the point with the same feature id
+	 * on the last collision check, or no impulse if there is none.
+	 */
+	void matchImpulses() {
+		for (int i = 0; i < numPoints; i++) {
+			normalImpulses[i] = 0;
+			tangentImpulses[i] = 0;
+			for (int j = 0; j < lastNumPoints; j++) {
+				if (lastFeatureIds[j] == featureIds[i]) {
+					normalImpulses[i] = lastNormalImpulses[j];
+					tangentImpulses[i] = lastTangentImpulses[j];
+				}
+			}
+		}
+	}
+
+	/**
+	 * Clear all of the manifold's state, for it to be handed out to a new pair of
+	 * meshes.
+	 */
+	void recycle() {
+		reset(null, null, null, null);
+		pairMeshA = null;
+		pairMeshB = null;
+		cachedMesh = null;
+		cachedEdge = 0;
+		simplex.reset();
+		lastNumPoints = 0;
+	}
+
+	/**
+	 * Reset the manifold for a new collision check between 2 meshes.
+	 */
+	void reset(PhysicalObject objA, PhysicalObject objB, CollisionMesh meshA, CollisionMesh meshB) {
 		this.objA = objA;
 		this.objB = objB;
 		this.meshA = meshA;
 		this.meshB = meshB;
-		this.normal = normal;
-		this.affectPoints = affectPoints;
+		this.numPoints = 0;
+		this.penetration = 0;
+	}
+
+	/**
+	 * Add a contact point to the manifold.
+	 *
+	 * @param x          The x coordinate of the contact point.
+	 * @param y          The y coordinate of the contact point.
+	 * @param separation The separation of the meshes at the point - negative when
+	 *                   penetrating.
+	 * @param featureId  The id of the features in contact at the point.
+	 */
+	void addPoint(float x, float y, float separation, int featureId) {
+		points[numPoints].set(x, y);
+		separations[numPoints] = separation;
+		featureIds[numPoints] = featureId;
+		numPoints++;
+	}
+
+	/**
+	 * Pack the features in contact at a point into an id. Features are a vertex or
+	 * a face of the reference and the incident mesh.
+	 */
+	static int makeFeatureId(int referenceIndex, int referenceType, int incidentIndex, int incidentType,
+			boolean flipped) {
+		return (referenceIndex & 0xFFF) | (incidentIndex & 0xFFF) << 12 | referenceType << 24 | incidentType << 25
+				| (flipped ? 1 << 26 : 0);
+	}
+
+	@Override
+	public String toString() {
+		return "Collision details: {\n\tobject A: " + objA + ", \n\tobject B: " + objB + ",\n\tnormal: [" + normal.x
+				+ "," + normal.y + "],\n\tpenetration: " + penetration + ",\n\tpoints: " + numPoints + ",\n}";
+	}
+
+	//////////////////
+	// Constructors //
+	//////////////////
+
+	public CollisionDetails() {
 	}
 }
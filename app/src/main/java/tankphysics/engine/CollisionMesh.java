@@ -2,7 +2,6 @@ package tankphysics.engine;
 
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 
@@ -18,9 +17,16 @@ public class CollisionMesh implements Component, PhysicalObject {
 	private MeshType meshType;
 	private List<PVector> vertices;
 	private List<PVector> storageVertices;
+	private List<PVector> normals;
+	private float winding = 1;
+	private boolean convex;
 	private float radius;
 	private final static PVector PARTICLE_SIZE = new PVector(0.01f, 0.01f);
 
+	// Distance queries
+	private final static int DISTANCE_MAX_ITERATIONS = 20;
+	private final static float DISTANCE_EPSILON = 1e-6f;
+
 	private PVector size;
 	private PVector anchor;
 	private PVector savedAnchor;
@@ -29,12 +35,26 @@ public class CollisionMesh implements Component, PhysicalObject {
 	private float staticFriction = 1f;
 	private float dynamicFriction = 1f;
 	private float bounciness = 1f;
-	private boolean addForCollisions = true;
+
+	// Handle given by the director attaching the object.
+	private long handle = HandleAllocator.NONE;
+
+	// Collision filtering
+	private int collisionCategory = PhysicalObject.DEFAULT_COLLISION_CATEGORY;
+	private int collisionMask = PhysicalObject.ALL_COLLISION_CATEGORIES;
+	private int collisionGroup = 0;
 
 	// Optimisation features on rotation
 	private float ROTATION_CALC_THRESHOLD = 0.01f;
 	private float savedAngle;
 
+	// Cached world bounds, recalculated when the object or the vertices change.
+	private AABB bounds = new AABB();
+	private GameObject boundsObject;
+	private int boundsTransformVersion;
+	private int boundsMeshVersion;
+	private int meshVersion = 0;
+
 	static enum MeshType {
 		CIRCLE, POLYGON, PARTICLE
 	}
@@ -45,7 +65,9 @@ public class CollisionMesh implements Component, PhysicalObject {
 
 	public void attach(GameObject obj) {
 		object = obj;
-		this.size = obj.getSize();
+		if (meshType == MeshType.POLYGON) {
+			this.size = obj.getSize();
+		}
 	}
 
 	public MeshType getMeshType() {
@@ -53,15 +75,114 @@ public class CollisionMesh implements Component, PhysicalObject {
 	}
 
 	public PVector getSize() {
-		return meshType == MeshType.POLYGON ? size : new PVector(radius * 2, radius * 2);
+		return size;
+	}
+
+	public AABB getBounds() {
+		updateBounds();
+		return bounds;
+	}
+
+	public void updateBounds() {
+		if (boundsObject != object || boundsTransformVersion != object.getTransformVersion()
+				|| boundsMeshVersion != meshVersion) {
+			calculateBounds();
+			boundsObject = object;
+			boundsTransformVersion = object.getTransformVersion();
+			boundsMeshVersion = meshVersion;
+		}
+	}
+
+	public AABB getCachedBounds() {
+		return bounds;
+	}
+
+	/**
+	 * Get bounds of the mesh relative to its object's position, in the frame of
+	 * the object's rotation. The mesh only turns once its object turned past the
+	 * rotation threshold, and polygons turn around their last anchor, so the
+	 * bounds are widened to hold the mesh at any rotation of the object.
+	 *
+	 * @param out The box to write the bounds to.
+	 */
+	void getLocalBounds(AABB out) {
+		float anchorReach = savedAnchor.mag();
+		float minX, minY, maxX, maxY, reach;
+		if (meshType == MeshType.POLYGON) {
+			minX = minY = Float.MAX_VALUE;
+			maxX = maxY = -Float.MAX_VALUE;
+			reach = 0;
+			for (int i = 0; i < storageVertices.size(); i++) {
+				PVector v = storageVertices.get(i);
+				minX = Math.min(minX, v.x - anchorReach);
+				minY = Math.min(minY, v.y - anchorReach);
+				maxX = Math.max(maxX, v.x + anchorReach);
+				maxY = Math.max(maxY, v.y + anchorReach);
+				reach = Math.max(reach, v.mag() + anchorReach);
+			}
+		} else {
+			float extent = meshType == MeshType.CIRCLE ? radius : PARTICLE_SIZE.x / 2;
+			minX = savedAnchor.x - extent;
+			minY = savedAnchor.y - extent;
+			maxX = savedAnchor.x + extent;
+			maxY = savedAnchor.y + extent;
+			reach = anchorReach + extent;
+		}
+		float lag = ROTATION_CALC_THRESHOLD * reach;
+		out.set(minX - lag, minY - lag, maxX + lag, maxY + lag);
 	}
 
 	public float getBounciness() {
 		return bounciness;
 	}
 
-	public boolean addForCollisions() {
-		return addForCollisions;
+	public int getCollisionCategory() {
+		return collisionCategory;
+	}
+
+	public int getCollisionMask() {
+		return collisionMask;
+	}
+
+	public long getHandle() {
+		return handle;
+	}
+
+	public void setHandle(long handle) {
+		this.handle = handle;
+	}
+
+	public int getCollisionGroup() {
+		return collisionGroup;
+	}
+
+	public void setCollisionCategory(int category) {
+		this.collisionCategory = category;
+	}
+
+	public void setCollisionMask(int mask) {
+		this.collisionMask = mask;
+	}
+
+	public void setCollisionGroup(int group) {
+		this.collisionGroup = group;
+	}
+
+	/**
+	 * Set the collision filter of the mesh. Two objects only collide if the
+	 * category of each is in the mask of the other, unless they share a non-zero
+	 * group - in which case they always collide if the group is positive, and
+	 * never if it is negative. The filter of a
+	 * mesh in a rigid body's hitbox is ignored, in favour of the rigid body's.
+	 *
+	 * @param category The category bits of the mesh.
+	 * @param mask     The bits of the categories the mesh collides with.
+	 * @param group    The collision group of the mesh, or 0 for none.
+	 */
+	public void setCollisionFilter(int category, int mask, int group) {
+		this.collisionCategory = category;
+		this.collisionMask = mask;
+		this.collisionGroup = group;
 	}
 
 	public float getStaticFriction() {
@@ -74,12 +195,23 @@ public class CollisionMesh implements Component, PhysicalObject {
 
 	public void setOrientation(float angle, RigidBody body) {
 		if (Math.abs(angle - this.savedAngle) > ROTATION_CALC_THRESHOLD) {
-			vertices = Polygons.getRotatedVertices(storageVertices, anchor, angle);
-			anchor = Polygons.getRotatedVector(savedAnchor, angle);
+			float cos = (float) Math.cos(angle), sin = (float) Math.sin(angle);
+			if (meshType == MeshType.POLYGON) {
+				rotateVertices(cos, sin);
+			}
+			anchor.set(cos * savedAnchor.x - sin * savedAnchor.y, sin * savedAnchor.x + cos * savedAnchor.y);
 			this.savedAngle = angle;
+			if (meshType == MeshType.POLYGON) {
+				calculateNormals();
+			}
+			meshVersion++;
 		}
 	}
 
+	public float getRadius() {
+		return radius;
+	}
+
 	public int getNumVertices() {
 		return vertices.size();
 	}
@@ -96,6 +228,12 @@ public class CollisionMesh implements Component, PhysicalObject {
 		return Arrays.asList(this);
 	}
 
+	public void queryMeshes(AABB area, List<CollisionMesh> out) {
+		if (getBounds().overlaps(area)) {
+			out.add(this);
+		}
+	}
+
 	public GameObject getObject() {
 		return this.object;
 	}
@@ -108,9 +246,16 @@ public class CollisionMesh implements Component, PhysicalObject {
 		return new PVector();
 	}
 
+	public void getVelocity(PVector out) {
+		out.set(0, 0);
+	}
+
 	public void setPosition(PVector position) {
 	}
 
+	public void setPosition(float x, float y) {
+	}
+
 	public PVector getPosition() {
 		return PVector.add(object.getPosition(), anchor);
 	}
@@ -118,6 +263,9 @@ public class CollisionMesh implements Component, PhysicalObject {
 	public void setVelocity(PVector velocity) {
 	}
 
+	public void setVelocity(float x, float y) {
+	}
+
 	public float getOrientation() {
 		return 0;
 	}
@@ -153,148 +301,861 @@ public class CollisionMesh implements Component, PhysicalObject {
 	////////////////////////////
 
 	/**
-	 * Check if a polygon is colliding with the point of another polygon. Used the
-	 * Minkowski Difference-based Separating Axis Theorem algorithm. Based on Dirk
-	 * Gregorius's slides during GDC 2013. cf.
+	 * Generate the contact manifold between 2 meshes. For polygons, the separating
+	 * axis theorem gives the face of least penetration over both polygons - the
+	 * reference face. The face of the other polygon most facing it - the incident
+	 * face - is then clipped against the side planes of the reference face, which
+	 * keeps at most 2 contact points. Based on Dirk Gregorius's slides during GDC
+	 * 2013 and Erin Catto's Box2D. cf.
 	 * https://gdcvault.com/play/1017646/Physics-for-Game-Programmers-The
 	 *
-	 * @param polygonA The polygon to check sides from.
-	 * @param polygonB the polygon to check points from
+	 * @param meshA The 1st mesh to check.
+	 * @param meshB The 2nd mesh to check.
+	 * @param objA  The physical object the 1st mesh belongs to.
+	 * @param objB  The physical object the 2nd mesh belongs to.
+	 * @param out   The manifold to write the contact to. Objects and meshes are
+	 *              swapped in the manifold if the reference face is on the 2nd
+	 *              mesh.
 	 *
-	 * @return The vertices for which the edge has the closest distance, and the
-	 *         minkowski distance of polygon B to the edge.
+	 * @return Whether the meshes are colliding.
 	 */
-	public static CollisionDetails queryFaceDist(CollisionMesh polygonA, CollisionMesh polygonB, PhysicalObject objA,
-			PhysicalObject objB) {
-		if (polygonA.meshType == MeshType.CIRCLE) {
-			return circleQueryFaceDist(polygonA, polygonB, objA, objB);
-		} else if (polygonA.meshType == MeshType.PARTICLE) {
-			if (polygonB.meshType == MeshType.PARTICLE) {
-				return null;
-			} else {
-				return queryFaceDist(polygonB, polygonA, objB, objA);
+	public static boolean collide(CollisionMesh meshA, CollisionMesh meshB, PhysicalObject objA, PhysicalObject objB,
+			CollisionDetails out) {
+		out.clearPoints();
+		if (meshA.meshType == MeshType.POLYGON && meshB.meshType == MeshType.POLYGON) {
+			return collidePolygons(meshA, meshB, objA, objB, out);
+		} else if ((meshA.meshType == MeshType.POLYGON || meshB.meshType == MeshType.POLYGON)
+				&& closestPoints(meshA, meshB, out.simplex, null) > 0) {
+			// Rounds and polygons are first ruled out with the manifold's simplex, warm
+			// started from the last check, instead of testing every face.
+			return false;
+		} else if (meshA.meshType == MeshType.POLYGON) {
+			return collidePolygonAndRound(meshA, meshB, objA, objB, out, false);
+		} else if (meshB.meshType == MeshType.POLYGON) {
+			return collidePolygonAndRound(meshB, meshA, objB, objA, out, true);
+		} else if (meshA.meshType == MeshType.PARTICLE && meshB.meshType == MeshType.PARTICLE) {
+			return false;
+		}
+		return collideRounds(meshA, meshB, objA, objB, out);
+	}
+
+	// Generate the manifold between 2 polygons by clipping the incident face
+	// against the reference face.
+	private static boolean collidePolygons(CollisionMesh polygonA, CollisionMesh polygonB, PhysicalObject objA,
+			PhysicalObject objB, CollisionDetails out) {
+		// Test the cached face first - the full scan is only needed once it stops
+		// separating the polygons.
+		CollisionMesh cachedMesh = out.cachedMesh;
+		if ((cachedMesh == polygonA || cachedMesh == polygonB) && out.cachedEdge < cachedMesh.vertices.size()
+				&& getEdgeSeparation(cachedMesh, out.cachedEdge, cachedMesh == polygonA ? polygonB : polygonA) > 0) {
+			return false;
+		}
+
+		int edgeA = findMaxSeparation(polygonA, polygonB);
+		float separationA = getEdgeSeparation(polygonA, edgeA, polygonB);
+		if (separationA > 0) {
+			out.cachedMesh = polygonA;
+			out.cachedEdge = edgeA;
+			return false;
+		}
+		int edgeB = findMaxSeparation(polygonB, polygonA);
+		float separationB = getEdgeSeparation(polygonB, edgeB, polygonA);
+		if (separationB > 0) {
+			out.cachedMesh = polygonB;
+			out.cachedEdge = edgeB;
+			return false;
+		}
+
+		// Prefer the face of A, so the reference face doesn't flip between frames.
+		boolean flipped = separationB > separationA + PhysicalObject.SAME_EDGE_THRESHOLD;
+		CollisionMesh reference = flipped ? polygonB : polygonA;
+		CollisionMesh incident = flipped ? polygonA : polygonB;
+		int referenceEdge = flipped ? edgeB : edgeA;
+		out.cachedMesh = reference;
+		out.cachedEdge = referenceEdge;
+		if (flipped) {
+			out.reset(objB, objA, polygonB, polygonA);
+		} else {
+			out.reset(objA, objB, polygonA, polygonB);
+		}
+
+		// Find the incident face, the most anti-parallel to the reference face.
+		PVector normal = reference.normals.get(referenceEdge);
+		int incidentEdge = 0;
+		float minDot = Float.MAX_VALUE;
+		for (int i = 0; i < incident.normals.size(); i++) {
+			float dot = normal.dot(incident.normals.get(i));
+			if (dot < minDot) {
+				minDot = dot;
+				incidentEdge = i;
+			}
+		}
+
+		// Get the reference face and its tangent, in world coordinates.
+		PVector referencePosition = reference.object.getPosition();
+		int nextReferenceEdge = (referenceEdge + 1) % reference.vertices.size();
+		float v1x = referencePosition.x + reference.vertices.get(referenceEdge).x;
+		float v1y = referencePosition.y + reference.vertices.get(referenceEdge).y;
+		float v2x = referencePosition.x + reference.vertices.get(nextReferenceEdge).x;
+		float v2y = referencePosition.y + reference.vertices.get(nextReferenceEdge).y;
+		float tangentX = v2x - v1x, tangentY = v2y - v1y;
+		float length = (float) Math.sqrt(tangentX * tangentX + tangentY * tangentY);
+		tangentX /= length;
+		tangentY /= length;
+
+		// Clip the incident face against the side planes of the reference face.
+		PVector incidentPosition = incident.object.getPosition();
+		int nextIncidentEdge = (incidentEdge + 1) % incident.vertices.size();
+		PVector i1 = incident.vertices.get(incidentEdge), i2 = incident.vertices.get(nextIncidentEdge);
+		int id1 = CollisionDetails.makeFeatureId(referenceEdge, CollisionDetails.FEATURE_FACE, incidentEdge,
+				CollisionDetails.FEATURE_VERTEX, flipped);
+		int id2 = CollisionDetails.makeFeatureId(referenceEdge, CollisionDetails.FEATURE_FACE, nextIncidentEdge,
+				CollisionDetails.FEATURE_VERTEX, flipped);
+		out.addPoint(incidentPosition.x + i1.x, incidentPosition.y + i1.y, 0, id1);
+		out.addPoint(incidentPosition.x + i2.x, incidentPosition.y + i2.y, 0, id2);
+		if (!clipSegment(out, -tangentX, -tangentY, -(tangentX * v1x + tangentY * v1y), referenceEdge, incidentEdge,
+				flipped)
+				|| !clipSegment(out, tangentX, tangentY, tangentX * v2x + tangentY * v2y, nextReferenceEdge,
+						incidentEdge, flipped)) {
+			out.numPoints = 0;
+			return false;
+		}
+
+		// Keep the points below the reference face, moved halfway to it.
+		int kept = 0;
+		out.penetration = 0;
+		for (int i = 0; i < 2; i++) {
+			PVector p = out.points[i];
+			float separation = normal.x * (p.x - v1x) + normal.y * (p.y - v1y);
+			if (separation <= 0) {
+				out.points[kept].set(p.x - normal.x * separation / 2, p.y - normal.y * separation / 2);
+				out.separations[kept] = separation;
+				out.featureIds[kept] = out.featureIds[i];
+				out.penetration = Math.min(out.penetration, separation);
+				kept++;
 			}
 		}
+		out.numPoints = kept;
+		out.normal.set(normal.x, normal.y);
+		return kept > 0;
+	}
 
-		// Get distance to polygon - Apply SAT.
-		CollisionDetails ret = new CollisionDetails(-Float.MAX_VALUE, objA, objB, polygonA, polygonB, null,
-				new ArrayList<>());
-		float reverseFactor = 1.0f;
-		PVector p1 = new PVector(), p2 = new PVector();
+	// Clip the 2 points of a manifold against a plane, keeping the side below the
+	// plane. A point above the plane is moved to where the segment crosses it.
+	// Returns false if both points are above the plane.
+	private static boolean clipSegment(CollisionDetails out, float normalX, float normalY, float offset,
+			int clipVertex, int incidentEdge, boolean flipped) {
+		PVector p0 = out.points[0], p1 = out.points[1];
+		float dist0 = normalX * p0.x + normalY * p0.y - offset;
+		float dist1 = normalX * p1.x + normalY * p1.y - offset;
+		if (dist0 > 0 && dist1 > 0) {
+			return false;
+		} else if (dist0 > 0 || dist1 > 0) {
+			float t = dist0 / (dist0 - dist1);
+			float x = p0.x + t * (p1.x - p0.x), y = p0.y + t * (p1.y - p0.y);
+			int i = dist0 > 0 ? 0 : 1;
+			out.points[i].set(x, y);
+			out.featureIds[i] = CollisionDetails.makeFeatureId(clipVertex, CollisionDetails.FEATURE_VERTEX,
+					incidentEdge, CollisionDetails.FEATURE_FACE, flipped);
+		}
+		return true;
+	}
 
+	// Find the face of polygon A with the largest separation from polygon B.
+	// Stops early on a separating face. The faces turn a little from one to the
+	// next, so the search for B's deepest vertex starts from the last one found.
+	private static int findMaxSeparation(CollisionMesh polygonA, CollisionMesh polygonB) {
+		int bestEdge = 0;
+		int support = 0;
+		float maxSeparation = -Float.MAX_VALUE;
 		for (int i = 0; i < polygonA.vertices.size(); i++) {
-			PVector vertex1 = PVector.add(polygonA.getObject().getPosition(), polygonA.vertices.get(i));
-			PVector vertex2 = PVector.add(polygonA.getObject().getPosition(),
-					polygonA.vertices.get((i + 1) % polygonA.vertices.size()));
-
-			// Get normal of plane, get support from inverse of normal's direction, and
-			// compare distances.
-			PVector planeNormal = new PVector(PVector.sub(vertex2, vertex1).y, -PVector.sub(vertex2, vertex1).x)
-					.mult(reverseFactor).normalize();
-
-			List<PVector> supports = new ArrayList<>(
-					polygonB.getSupportPoint(new PVector(-planeNormal.x, -planeNormal.y)).stream()
-							.map((v) -> PVector.add(polygonB.getObject().getPosition(), v)).toList());
-			float dist = PVector.dot(PVector.sub(supports.get(0), vertex1), planeNormal);
-
-			// Assume 1st vertex negative - reverse normals if not.
-			if (i == 0 && dist > 0.0f) {
-				reverseFactor = -1.0f;
-				i -= 1;
-			} else if (dist > ret.penetration) {
-				p1 = vertex1;
-				p2 = vertex2;
-				ret.penetration = dist;
-				ret.affectPoints = supports;
-				ret.normal = planeNormal;
-
-				if (ret.penetration > 0.0f) {
-					return null;
+			PVector normal = polygonA.normals.get(i);
+			support = polygonB.getSupportIndex(-normal.x, -normal.y, support);
+			float separation = getVertexSeparation(polygonA, i, polygonB, support);
+			if (separation > maxSeparation) {
+				maxSeparation = separation;
+				bestEdge = i;
+				if (separation > 0) {
+					break;
 				}
 			}
 		}
-		ret.affectPoints = cleanFromVoronoiRegions(ret.affectPoints, p1, p2, objB.getPosition());
-		return ret;
-	}
-
-	// Remove points from the list that are not on the edge Voronoi region of the
-	// segment.
-	private static List<PVector> cleanFromVoronoiRegions(List<PVector> points, PVector p1, PVector p2,
-			PVector positionB) {
-		PVector tan1 = PVector.sub(p2, p1);
-		PVector tan2 = PVector.sub(p1, p2);
-		Iterator<PVector> iterator = points.iterator();
-		while (iterator.hasNext()) {
-			PVector v = iterator.next();
-			if (PVector.dot(PVector.sub(v, p1), tan1) < 0 || PVector.dot(PVector.sub(v, p2), tan2) < 0) {
-				iterator.remove();
+		return bestEdge;
+	}
+
+	// Get the separation of polygon B from a face of polygon A - the distance from
+	// the face's plane to the deepest vertex of B.
+	private static float getEdgeSeparation(CollisionMesh polygonA, int edge, CollisionMesh polygonB) {
+		PVector normal = polygonA.normals.get(edge);
+		return getVertexSeparation(polygonA, edge, polygonB, polygonB.getSupportIndex(-normal.x, -normal.y, 0));
+	}
+
+	// Get the distance from the plane of a face of polygon A to a vertex of polygon
+	// B.
+	private static float getVertexSeparation(CollisionMesh polygonA, int edge, CollisionMesh polygonB, int vertexB) {
+		PVector normal = polygonA.normals.get(edge);
+		PVector vertex = polygonA.vertices.get(edge);
+		PVector support = polygonB.vertices.get(vertexB);
+		PVector positionA = polygonA.object.getPosition(), positionB = polygonB.object.getPosition();
+		return normal.x * (positionB.x + support.x - positionA.x - vertex.x)
+				+ normal.y * (positionB.y + support.y - positionA.y - vertex.y);
+	}
+
+	// Generate the manifold between a polygon and a circle or particle, from the
+	// face of the polygon with the largest separation from the circle's center.
+	// A center outside the polygon past the end of that face is in the region of
+	// one of its vertices, and is pushed out of that vertex instead.
+	private static boolean collidePolygonAndRound(CollisionMesh polygon, CollisionMesh round, PhysicalObject objPolygon,
+			PhysicalObject objRound, CollisionDetails out, boolean flipped) {
+		PVector polygonPosition = polygon.object.getPosition(), roundPosition = round.object.getPosition();
+		float centerX = roundPosition.x + round.anchor.x - polygonPosition.x;
+		float centerY = roundPosition.y + round.anchor.y - polygonPosition.y;
+		float roundRadius = round.meshType == MeshType.CIRCLE ? round.radius : 0;
+
+		int bestEdge = 0;
+		float maxSeparation = -Float.MAX_VALUE;
+		for (int i = 0; i < polygon.vertices.size(); i++) {
+			PVector normal = polygon.normals.get(i), vertex = polygon.vertices.get(i);
+			float separation = normal.x * (centerX - vertex.x) + normal.y * (centerY - vertex.y);
+			if (separation > roundRadius) {
+				return false;
+			} else if (separation > maxSeparation) {
+				maxSeparation = separation;
+				bestEdge = i;
 			}
 		}
-		return points;
+
+		// A center outside the polygon and past an end of the face is in the region of
+		// the vertex at that end.
+		int numVertices = polygon.vertices.size();
+		PVector v1 = polygon.vertices.get(bestEdge), v2 = polygon.vertices.get((bestEdge + 1) % numVertices);
+		float edgeX = v2.x - v1.x, edgeY = v2.y - v1.y;
+		int vertex = -1;
+		if (maxSeparation > 0) {
+			if ((centerX - v1.x) * edgeX + (centerY - v1.y) * edgeY <= 0) {
+				vertex = bestEdge;
+			} else if ((centerX - v2.x) * -edgeX + (centerY - v2.y) * -edgeY <= 0) {
+				vertex = (bestEdge + 1) % numVertices;
+			}
+		}
+
+		out.reset(objPolygon, objRound, polygon, round);
+		if (vertex == -1) {
+			PVector normal = polygon.normals.get(bestEdge);
+			out.normal.set(normal.x, normal.y);
+			out.penetration = maxSeparation - roundRadius;
+		} else {
+			PVector v = polygon.vertices.get(vertex);
+			float distX = centerX - v.x, distY = centerY - v.y;
+			float dist = (float) Math.sqrt(distX * distX + distY * distY);
+			if (dist > roundRadius) {
+				return false;
+			}
+			out.normal.set(distX / dist, distY / dist);
+			out.penetration = dist - roundRadius;
+		}
+		float depth = roundRadius + out.penetration / 2;
+		out.addPoint(polygonPosition.x + centerX - out.normal.x * depth,
+				polygonPosition.y + centerY - out.normal.y * depth, out.penetration,
+				CollisionDetails.makeFeatureId(vertex == -1 ? bestEdge : vertex,
+						vertex == -1 ? CollisionDetails.FEATURE_FACE : CollisionDetails.FEATURE_VERTEX, 0,
+						CollisionDetails.FEATURE_VERTEX, flipped));
+		return true;
+	}
+
+	// Generate the manifold between 2 circles or a circle and a particle.
+	private static boolean collideRounds(CollisionMesh roundA, CollisionMesh roundB, PhysicalObject objA,
+			PhysicalObject objB, CollisionDetails out) {
+		PVector positionA = roundA.object.getPosition(), positionB = roundB.object.getPosition();
+		float centerAX = positionA.x + roundA.anchor.x, centerAY = positionA.y + roundA.anchor.y;
+		float distX = positionB.x + roundB.anchor.x - centerAX, distY = positionB.y + roundB.anchor.y - centerAY;
+		float radiusA = roundA.meshType == MeshType.CIRCLE ? roundA.radius : 0;
+		float radiusB = roundB.meshType == MeshType.CIRCLE ? roundB.radius : 0;
+		float dist = (float) Math.sqrt(distX * distX + distY * distY);
+		float separation = dist - radiusA - radiusB;
+		if (separation > 0) {
+			return false;
+		}
+
+		out.reset(objA, objB, roundA, roundB);
+		if (dist > 0) {
+			out.normal.set(distX / dist, distY / dist);
+		} else {
+			out.normal.set(1, 0);
+		}
+		out.penetration = separation;
+		float depth = radiusA + separation / 2;
+		out.addPoint(centerAX + out.normal.x * depth, centerAY + out.normal.y * depth, separation, CollisionDetails
+				.makeFeatureId(0, CollisionDetails.FEATURE_VERTEX, 0, CollisionDetails.FEATURE_VERTEX, false));
+		return true;
 	}
 
 	/**
-	 * Check if a circle mesh is colliding with a point of another polygon.
+	 * Get the distance between the surfaces of 2 meshes.
 	 *
-	 * @param sphere The circle to check with. Method returns null if mesh is a
-	 *               polygon.
-	 * @param mesh   The mesh to check points from. Can be either a polygon or a
-	 *               circle.
+	 * @param meshA The 1st mesh.
+	 * @param meshB The 2nd mesh.
+	 * @param cache The simplex cache of the pair of meshes, or null for a one-off
+	 *              query, which allocates a cache.
 	 *
-	 * @return The Minkowski distance with points that make a tangent on the support
-	 *         point of the circle's circle. Null if polygonA is a polygon mesh.
+	 * @return The distance between the meshes, 0 if they overlap.
 	 */
-	public static CollisionDetails circleQueryFaceDist(CollisionMesh sphere, CollisionMesh mesh, PhysicalObject objA,
-			PhysicalObject objB) {
-		if (sphere.meshType != MeshType.CIRCLE) {
-			return null;
+	public static float distance(CollisionMesh meshA, CollisionMesh meshB, SimplexCache cache) {
+		return closestPoints(meshA, meshB, cache, null);
+	}
+
+	/**
+	 * Check whether 2 meshes overlap, touching meshes included.
+	 *
+	 * @param meshA The 1st mesh.
+	 * @param meshB The 2nd mesh.
+	 * @param cache The simplex cache of the pair of meshes, or null for a one-off
+	 *              query, which allocates a cache.
+	 *
+	 * @return Whether the meshes overlap.
+	 */
+	public static boolean overlap(CollisionMesh meshA, CollisionMesh meshB, SimplexCache cache) {
+		return closestPoints(meshA, meshB, cache, null) <= 0;
+	}
+
+	/**
+	 * Get the closest points between 2 meshes with the GJK algorithm. The simplex
+	 * closest to the origin on the Minkowski difference of the meshes is searched
+	 * from the simplex of the last query in the cache, so queries on meshes that
+	 * barely moved end in 1 or 2 iterations. Circles are reduced to their center
+	 * and their radius applied to the result. Based on Erin Catto's Box2D. cf.
+	 * https://box2d.org/files/ErinCatto_GJK_GDC2010.pdf
+	 *
+	 * @param meshA The 1st mesh.
+	 * @param meshB The 2nd mesh.
+	 * @param cache The simplex cache of the pair of meshes, or null for a one-off
+	 *              query, which allocates a cache.
+	 * @param out   The result to write the closest points to, or null for none.
+	 *
+	 * @return The distance between the meshes, 0 if they overlap.
+	 */
+	public static float closestPoints(CollisionMesh meshA, CollisionMesh meshB, SimplexCache cache,
+			DistanceResult out) {
+		if (cache == null) {
+			cache = new SimplexCache();
 		}
+		PVector positionA = meshA.object.getPosition(), positionB = meshB.object.getPosition();
 
-		float minDist = Float.MAX_VALUE;
-		PVector affectPoint = null;
-		if (mesh.meshType == MeshType.POLYGON) {
-			for (PVector v : mesh.vertices) {
-				v = PVector.add(mesh.getObject().getPosition(), v);
-				float dist = PVector.dist(sphere.anchor, v);
-				if (dist < minDist) {
-					minDist = PVector.dist(sphere.anchor, v);
-					affectPoint = v;
+		// Warm start from the cached simplex, unless it no longer fits the meshes.
+		for (int i = 0; i < cache.count; i++) {
+			if (cache.indexA[i] >= meshA.getNumSupportVertices() || cache.indexB[i] >= meshB.getNumSupportVertices()) {
+				cache.count = 0;
+				break;
+			}
+			setSimplexVertex(cache, i, meshA, cache.indexA[i], positionA, meshB, cache.indexB[i], positionB);
+		}
+		if (cache.count > 1 && getSimplexMetric(cache) < DISTANCE_EPSILON) {
+			cache.count = 1;
+		}
+		if (cache.count == 0) {
+			setSimplexVertex(cache, 0, meshA, 0, positionA, meshB, 0, positionB);
+			cache.count = 1;
+		}
+		if (cache.count == 1) {
+			cache.weights[0] = 1;
+		}
+
+		int iterations = 0;
+		while (iterations < DISTANCE_MAX_ITERATIONS) {
+			// Keep the simplex's vertices to catch repeated support points.
+			int savedCount = cache.count;
+			long saved0 = packSimplexIndices(cache, 0);
+			long saved1 = packSimplexIndices(cache, 1);
+			long saved2 = packSimplexIndices(cache, 2);
+
+			if (cache.count == 2) {
+				solveSimplex2(cache);
+			} else if (cache.count == 3) {
+				solveSimplex3(cache);
+			}
+			// The origin is in the triangle - the meshes overlap.
+			if (cache.count == 3) {
+				break;
+			}
+
+			// Search towards the origin from the simplex.
+			float dirX, dirY;
+			if (cache.count == 1) {
+				dirX = -cache.pointX[0];
+				dirY = -cache.pointY[0];
+			} else {
+				float edgeX = cache.pointX[1] - cache.pointX[0], edgeY = cache.pointY[1] - cache.pointY[0];
+				if (edgeY * cache.pointX[0] - edgeX * cache.pointY[0] > 0) {
+					dirX = -edgeY;
+					dirY = edgeX;
+				} else {
+					dirX = edgeY;
+					dirY = -edgeX;
 				}
 			}
+			// The origin is on the simplex - the meshes touch.
+			if (dirX * dirX + dirY * dirY < DISTANCE_EPSILON * DISTANCE_EPSILON) {
+				break;
+			}
+
+			int indexA = meshA.getSupportVertex(-dirX, -dirY, cache.indexA[cache.count - 1]);
+			int indexB = meshB.getSupportVertex(dirX, dirY, cache.indexB[cache.count - 1]);
+			iterations++;
+			long indices = (long) indexA << 32 | indexB;
+			if (indices == saved0 || savedCount > 1 && indices == saved1 || savedCount > 2 && indices == saved2) {
+				break;
+			}
+			setSimplexVertex(cache, cache.count++, meshA, indexA, positionA, meshB, indexB, positionB);
+		}
+
+		// Get the closest points from the barycentric coordinates of the simplex.
+		float pointAX = 0, pointAY = 0, pointBX = 0, pointBY = 0;
+		for (int i = 0; i < cache.count; i++) {
+			pointAX += cache.weights[i] * cache.pointAX[i];
+			pointAY += cache.weights[i] * cache.pointAY[i];
+			pointBX += cache.weights[i] * cache.pointBX[i];
+			pointBY += cache.weights[i] * cache.pointBY[i];
+		}
+		if (cache.count == 3) {
+			pointBX = pointAX;
+			pointBY = pointAY;
+		}
+
+		// Apply the radius of circles.
+		float radiusA = meshA.meshType == MeshType.CIRCLE ? meshA.radius : 0;
+		float radiusB = meshB.meshType == MeshType.CIRCLE ? meshB.radius : 0;
+		float distX = pointBX - pointAX, distY = pointBY - pointAY;
+		float dist = (float) Math.sqrt(distX * distX + distY * distY);
+		float distance = 0;
+		if (dist > radiusA + radiusB && dist > DISTANCE_EPSILON) {
+			float normalX = distX / dist, normalY = distY / dist;
+			pointAX += normalX * radiusA;
+			pointAY += normalY * radiusA;
+			pointBX -= normalX * radiusB;
+			pointBY -= normalY * radiusB;
+			distance = dist - radiusA - radiusB;
 		} else {
-			minDist = PVector.sub(sphere.getObject().getPosition(), mesh.getObject().getPosition()).mag()
-					- sphere.radius - mesh.radius;
+			pointAX = pointBX = (pointAX + pointBX) / 2;
+			pointAY = pointBY = (pointAY + pointBY) / 2;
+		}
+
+		if (out != null) {
+			out.pointA.set(pointAX, pointAY);
+			out.pointB.set(pointBX, pointBY);
+			out.distance = distance;
+			out.iterations = iterations;
+		}
+		return distance;
+	}
+
+	// Get the number of vertices the mesh's support points are picked from - 1
+	// for circles and particles, which are reduced to their center.
+	private int getNumSupportVertices() {
+		return meshType == MeshType.POLYGON ? vertices.size() : 1;
+	}
+
+	// Get the index of the mesh's support vertex over a direction, searching from
+	// a vertex close to it.
+	private int getSupportVertex(float dirX, float dirY, int start) {
+		return meshType == MeshType.POLYGON ? getSupportIndex(dirX, dirY, start) : 0;
+	}
+
+	// Set a vertex of the working simplex from the support vertices of both
+	// meshes, in world coordinates.
+	private static void setSimplexVertex(SimplexCache cache, int i, CollisionMesh meshA, int indexA,
+			PVector positionA, CollisionMesh meshB, int indexB, PVector positionB) {
+		PVector vertexA = meshA.meshType == MeshType.POLYGON ? meshA.vertices.get(indexA) : meshA.anchor;
+		PVector vertexB = meshB.meshType == MeshType.POLYGON ? meshB.vertices.get(indexB) : meshB.anchor;
+		cache.indexA[i] = indexA;
+		cache.indexB[i] = indexB;
+		cache.pointAX[i] = positionA.x + vertexA.x;
+		cache.pointAY[i] = positionA.y + vertexA.y;
+		cache.pointBX[i] = positionB.x + vertexB.x;
+		cache.pointBY[i] = positionB.y + vertexB.y;
+		cache.pointX[i] = cache.pointBX[i] - cache.pointAX[i];
+		cache.pointY[i] = cache.pointBY[i] - cache.pointAY[i];
+	}
+
+	// Pack the support vertex indices of a vertex of the simplex into 1 value.
+	private static long packSimplexIndices(SimplexCache cache, int i) {
+		return (long) cache.indexA[i] << 32 | cache.indexB[i];
+	}
+
+	// Get the size of the simplex - the length of a segment or the area of a
+	// triangle - to discard degenerate cached simplices.
+	private static float getSimplexMetric(SimplexCache cache) {
+		float edge1X = cache.pointX[1] - cache.pointX[0], edge1Y = cache.pointY[1] - cache.pointY[0];
+		if (cache.count == 2) {
+			return (float) Math.sqrt(edge1X * edge1X + edge1Y * edge1Y);
+		}
+		float edge2X = cache.pointX[2] - cache.pointX[0], edge2Y = cache.pointY[2] - cache.pointY[0];
+		return Math.abs(edge1X * edge2Y - edge1Y * edge2X);
+	}
+
+	// Reduce a segment simplex to the vertex or segment closest to the origin,
+	// with the barycentric coordinates of the closest point.
+	private static void solveSimplex2(SimplexCache cache) {
+		float w1X = cache.pointX[0], w1Y = cache.pointY[0];
+		float w2X = cache.pointX[1], w2Y = cache.pointY[1];
+		float edgeX = w2X - w1X, edgeY = w2Y - w1Y;
+
+		// Vertex regions
+		float d12n2 = -(w1X * edgeX + w1Y * edgeY);
+		if (d12n2 <= 0) {
+			cache.weights[0] = 1;
+			cache.count = 1;
+			return;
+		}
+		float d12n1 = w2X * edgeX + w2Y * edgeY;
+		if (d12n1 <= 0) {
+			cache.copyVertex(1, 0);
+			cache.weights[0] = 1;
+			cache.count = 1;
+			return;
+		}
+
+		// Edge region
+		float inverse = 1 / (d12n1 + d12n2);
+		cache.weights[0] = d12n1 * inverse;
+		cache.weights[1] = d12n2 * inverse;
+	}
+
+	// Reduce a triangle simplex to the vertex, segment or triangle closest to the
+	// origin, with the barycentric coordinates of the closest point.
+	private static void solveSimplex3(SimplexCache cache) {
+		float w1X = cache.pointX[0], w1Y = cache.pointY[0];
+		float w2X = cache.pointX[1], w2Y = cache.pointY[1];
+		float w3X = cache.pointX[2], w3Y = cache.pointY[2];
+
+		float e12X = w2X - w1X, e12Y = w2Y - w1Y;
+		float d12n1 = w2X * e12X + w2Y * e12Y;
+		float d12n2 = -(w1X * e12X + w1Y * e12Y);
+		float e13X = w3X - w1X, e13Y = w3Y - w1Y;
+		float d13n1 = w3X * e13X + w3Y * e13Y;
+		float d13n2 = -(w1X * e13X + w1Y * e13Y);
+		float e23X = w3X - w2X, e23Y = w3Y - w2Y;
+		float d23n1 = w3X * e23X + w3Y * e23Y;
+		float d23n2 = -(w2X * e23X + w2Y * e23Y);
+
+		// Triangle barycentric coordinates, signed by the triangle's winding.
+		float n123 = e12X * e13Y - e12Y * e13X;
+		float d123n1 = n123 * (w2X * w3Y - w2Y * w3X);
+		float d123n2 = n123 * (w3X * w1Y - w3Y * w1X);
+		float d123n3 = n123 * (w1X * w2Y - w1Y * w2X);
+
+		if (d12n2 <= 0 && d13n2 <= 0) {
+			// Vertex 1 region
+			cache.weights[0] = 1;
+			cache.count = 1;
+		} else if (d12n1 > 0 && d12n2 > 0 && d123n3 <= 0) {
+			// Edge 12 region
+			float inverse = 1 / (d12n1 + d12n2);
+			cache.weights[0] = d12n1 * inverse;
+			cache.weights[1] = d12n2 * inverse;
+			cache.count = 2;
+		} else if (d13n1 > 0 && d13n2 > 0 && d123n2 <= 0) {
+			// Edge 13 region
+			float inverse = 1 / (d13n1 + d13n2);
+			cache.copyVertex(2, 1);
+			cache.weights[0] = d13n1 * inverse;
+			cache.weights[1] = d13n2 * inverse;
+			cache.count = 2;
+		} else if (d12n1 <= 0 && d23n2 <= 0) {
+			// Vertex 2 region
+			cache.copyVertex(1, 0);
+			cache.weights[0] = 1;
+			cache.count = 1;
+		} else if (d13n1 <= 0 && d23n1 <= 0) {
+			// Vertex 3 region
+			cache.copyVertex(2, 0);
+			cache.weights[0] = 1;
+			cache.count = 1;
+		} else if (d23n1 > 0 && d23n2 > 0 && d123n1 <= 0) {
+			// Edge 23 region
+			float inverse = 1 / (d23n1 + d23n2);
+			cache.copyVertex(2, 0);
+			cache.weights[0] = d23n2 * inverse;
+			cache.weights[1] = d23n1 * inverse;
+			cache.count = 2;
+		} else {
+			// Triangle region - the origin is inside.
+			float inverse = 1 / (d123n1 + d123n2 + d123n3);
+			cache.weights[0] = d123n1 * inverse;
+			cache.weights[1] = d123n2 * inverse;
+			cache.weights[2] = d123n3 * inverse;
 		}
-		PVector normal = PVector.sub(affectPoint, sphere.anchor);
-		return new CollisionDetails(minDist, objA, objB, sphere, mesh, normal, Arrays.asList(affectPoint));
 	}
 
 	/**
-	 * Get the support point of the mesh over a direction.
+	 * Cast a circle of a given radius along a ray against the mesh. A radius of 0
+	 * casts a plain ray. Casts starting inside the mesh don't hit it.
 	 *
-	 * @param direction The direction for which the support point is for.
+	 * @param originX     The x coordinate of the cast's origin.
+	 * @param originY     The y coordinate of the cast's origin.
+	 * @param dirX        The x coordinate of the cast's normalized direction.
+	 * @param dirY        The y coordinate of the cast's normalized direction.
+	 * @param maxDistance The maximum distance the cast travels.
+	 * @param castRadius  The radius of the cast circle.
+	 * @param obj         The physical object the mesh belongs to, for the hit.
+	 *
+	 * @return The hit on the mesh, or null if the cast doesn't hit it.
 	 */
-	public List<PVector> getSupportPoint(PVector direction) {
+	public RayCastHit rayCast(float originX, float originY, float dirX, float dirY, float maxDistance,
+			float castRadius, PhysicalObject obj) {
+		PVector position = object.getPosition();
+
+		// Circles and particles - cast against the circle inflated by the cast radius.
+		if (meshType != MeshType.POLYGON) {
+			float meshRadius = meshType == MeshType.CIRCLE ? radius : 0;
+			float centerX = position.x + anchor.x;
+			float centerY = position.y + anchor.y;
+			float dist = rayCastCircle(originX - centerX, originY - centerY, dirX, dirY, meshRadius + castRadius);
+			if (dist < 0 || dist > maxDistance) {
+				return null;
+			}
+			PVector normal = new PVector(originX + dirX * dist - centerX, originY + dirY * dist - centerY)
+					.normalize();
+			PVector point = new PVector(centerX + normal.x * meshRadius, centerY + normal.y * meshRadius);
+			return new RayCastHit(obj, this, point, normal, dist);
+		}
+
+		// Polygons - cast against the polygon rounded by the cast radius, made of its
+		// edges pushed out by the radius and of circles on its vertices.
+		boolean insideCore = true;
+		boolean overlapping = false;
+		float closestDist = maxDistance;
+		int closestEdge = -1, closestVertex = -1;
+		float closestNormalX = 0, closestNormalY = 0;
+		for (int i = 0; i < vertices.size(); i++) {
+			PVector v1 = vertices.get(i);
+			PVector v2 = vertices.get((i + 1) % vertices.size());
+			float x1 = position.x + v1.x, y1 = position.y + v1.y;
+			float edgeX = v2.x - v1.x, edgeY = v2.y - v1.y;
+			float length = (float) Math.sqrt(edgeX * edgeX + edgeY * edgeY);
+			if (length == 0) {
+				continue;
+			}
+			float normalX = edgeY / length * winding, normalY = -edgeX / length * winding;
+
+			// Get the origin's distance to the edge's plane and segment.
+			float planeDist = (originX - x1) * normalX + (originY - y1) * normalY;
+			float along = ((originX - x1) * edgeX + (originY - y1) * edgeY) / length;
+			insideCore &= planeDist <= 0;
+			if (castRadius > 0) {
+				float clamped = Math.max(0, Math.min(length, along));
+				float dx = originX - (x1 + edgeX / length * clamped), dy = originY - (y1 + edgeY / length * clamped);
+				overlapping |= dx * dx + dy * dy <= castRadius * castRadius;
+			}
+
+			// Cast against the pushed out edge, if the cast goes towards it.
+			float approach = dirX * normalX + dirY * normalY;
+			if (approach < 0 && planeDist >= castRadius) {
+				float dist = (planeDist - castRadius) / -approach;
+				float hitAlong = along + dist * (dirX * edgeX + dirY * edgeY) / length;
+				if (dist <= closestDist && hitAlong >= 0 && hitAlong <= length) {
+					closestDist = dist;
+					closestEdge = i;
+					closestVertex = -1;
+					closestNormalX = normalX;
+					closestNormalY = normalY;
+				}
+			}
+
+			// Cast against the circle on the vertex.
+			if (castRadius > 0) {
+				float dist = rayCastCircle(originX - x1, originY - y1, dirX, dirY, castRadius);
+				if (dist >= 0 && dist < closestDist) {
+					closestDist = dist;
+					closestEdge = -1;
+					closestVertex = i;
+				}
+			}
+		}
+		if (insideCore || overlapping || (closestEdge < 0 && closestVertex < 0)) {
+			return null;
+		}
+
+		float centerX = originX + dirX * closestDist, centerY = originY + dirY * closestDist;
+		if (closestEdge >= 0) {
+			PVector normal = new PVector(closestNormalX, closestNormalY);
+			PVector point = new PVector(centerX - normal.x * castRadius, centerY - normal.y * castRadius);
+			return new RayCastHit(obj, this, point, normal, closestDist);
+		}
+		PVector point = PVector.add(position, vertices.get(closestVertex));
+		PVector normal = new PVector(centerX - point.x, centerY - point.y).normalize();
+		return new RayCastHit(obj, this, point, normal, closestDist);
+	}
+
+	/**
+	 * Get the radius of the largest circle centered on the object's position and
+	 * inside the mesh, or 0 if the object's position isn't inside the mesh.
+	 */
+	public float getInscribedRadius() {
+		if (meshType == MeshType.CIRCLE) {
+			return Math.max(0, radius - anchor.mag());
+		} else if (meshType == MeshType.PARTICLE) {
+			return 0;
+		}
+		float inscribedRadius = Float.MAX_VALUE;
+		for (int i = 0; i < vertices.size(); i++) {
+			PVector v1 = vertices.get(i);
+			PVector v2 = vertices.get((i + 1) % vertices.size());
+			float edgeX = v2.x - v1.x, edgeY = v2.y - v1.y;
+			float length = (float) Math.sqrt(edgeX * edgeX + edgeY * edgeY);
+			if (length == 0) {
+				continue;
+			}
+			// Distance from the object's position - the local origin - to the edge.
+			float dist = (v1.x * edgeY - v1.y * edgeX) / length * winding;
+			inscribedRadius = Math.min(inscribedRadius, dist);
+		}
+		return Math.max(0, inscribedRadius);
+	}
+
+	// Get the distance along a normalized ray to a circle, with the ray's origin
+	// relative to the circle's center. Returns -1 if the ray misses the circle or
+	// starts inside it.
+	private static float rayCastCircle(float relX, float relY, float dirX, float dirY, float radius) {
+		float b = relX * dirX + relY * dirY;
+		float c = relX * relX + relY * relY - radius * radius;
+		if (c < 0 || b > 0) {
+			return -1;
+		}
+		float discriminant = b * b - c;
+		if (discriminant < 0) {
+			return -1;
+		}
+		return -b - (float) Math.sqrt(discriminant);
+	}
+
+	// Get the winding of the polygon's vertices - 1 if counter-clockwise in a
+	// y-up frame, -1 otherwise.
+	private float getWinding() {
+		float area = 0;
+		for (int i = 0; i < vertices.size(); i++) {
+			PVector v1 = vertices.get(i);
+			PVector v2 = vertices.get((i + 1) % vertices.size());
+			area += v1.x * v2.y - v2.x * v1.y;
+		}
+		return area < 0 ? -1 : 1;
+	}
+
+	// Rotate the stored vertices around the anchor into the polygon's vertices,
+	// which are only allocated on the first rotation.
+	private void rotateVertices(float cos, float sin) {
+		if (vertices == storageVertices) {
+			vertices = new ArrayList<>(storageVertices.size());
+			for (int i = 0; i < storageVertices.size(); i++) {
+				vertices.add(new PVector());
+			}
+		}
+		for (int i = 0; i < storageVertices.size(); i++) {
+			PVector v = storageVertices.get(i);
+			float x = v.x - anchor.x, y = v.y - anchor.y;
+			vertices.get(i).set(cos * x - sin * y, sin * x + cos * y);
+		}
+	}
+
+	// Calculate the outward normals of the polygon's faces, whatever the winding
+	// of its vertices. The i-th normal is for the face from the i-th vertex. The
+	// normals are reused once calculated.
+	private void calculateNormals() {
+		if (normals == null) {
+			normals = new ArrayList<>(vertices.size());
+			for (int i = 0; i < vertices.size(); i++) {
+				normals.add(new PVector());
+			}
+		}
+		for (int i = 0; i < vertices.size(); i++) {
+			PVector v1 = vertices.get(i);
+			PVector v2 = vertices.get((i + 1) % vertices.size());
+			normals.get(i).set(v2.y - v1.y, v1.x - v2.x).mult(winding).normalize();
+		}
+	}
+
+	// Calculate the world bounds tight to the mesh's vertices, circle or point.
+	private void calculateBounds() {
+		PVector position = object.getPosition();
 		if (meshType == MeshType.POLYGON) {
-			List<PVector> maxes = new ArrayList<>(Arrays.asList(vertices.get(0)));
-			float maxDot = PVector.dot(maxes.get(0), direction);
-			for (PVector v : vertices) {
-				float dot = v.dot(direction);
-				if (dot > maxDot + PhysicalObject.SAME_EDGE_THRESHOLD) {
-					maxes = new ArrayList<>(Arrays.asList(v));
+			float minX = Float.MAX_VALUE, minY = Float.MAX_VALUE;
+			float maxX = -Float.MAX_VALUE, maxY = -Float.MAX_VALUE;
+			for (int i = 0; i < vertices.size(); i++) {
+				PVector v = vertices.get(i);
+				minX = Math.min(minX, v.x);
+				minY = Math.min(minY, v.y);
+				maxX = Math.max(maxX, v.x);
+				maxY = Math.max(maxY, v.y);
+			}
+			bounds.set(position.x + minX, position.y + minY, position.x + maxX, position.y + maxY);
+		} else {
+			float extent = meshType == MeshType.CIRCLE ? radius : PARTICLE_SIZE.x / 2;
+			float centerX = position.x + anchor.x;
+			float centerY = position.y + anchor.y;
+			bounds.set(centerX - extent, centerY - extent, centerX + extent, centerY + extent);
+		}
+	}
+
+	// Get the index of the polygon's vertex furthest along a direction. On a
+	// strictly convex polygon, it is the only vertex with no neighbour further
+	// along the direction, so it is found by climbing from neighbour to neighbour
+	// from a starting vertex - only the vertices between the start and the support
+	// are visited. Other polygons are scanned in full. Ties go to the lowest index
+	// either way.
+	int getSupportIndex(float dirX, float dirY, int start) {
+		int numVertices = vertices.size();
+		if (!convex || start < 0 || start >= numVertices) {
+			int bestIndex = 0;
+			float maxDot = -Float.MAX_VALUE;
+			for (int i = 0; i < numVertices; i++) {
+				PVector v = vertices.get(i);
+				float dot = v.x * dirX + v.y * dirY;
+				if (dot > maxDot) {
 					maxDot = dot;
-				} else if (Math.abs(dot - maxDot) < PhysicalObject.SAME_EDGE_THRESHOLD) {
-					maxes.add(v);
+					bestIndex = i;
 				}
 			}
-			return maxes;
-		} else if (meshType == MeshType.CIRCLE) {
-			return new ArrayList<>(Arrays.asList(PVector.mult(PVector.fromAngle(direction.heading()), radius)));
-		} else {
-			return new ArrayList<>(Arrays.asList(this.getPosition()));
+			return bestIndex;
+		}
+
+		int index = start;
+		float dot = vertices.get(index).x * dirX + vertices.get(index).y * dirY;
+		while (true) {
+			int next = index + 1 == numVertices ? 0 : index + 1;
+			int previous = index == 0 ? numVertices - 1 : index - 1;
+			float nextDot = vertices.get(next).x * dirX + vertices.get(next).y * dirY;
+			float previousDot = vertices.get(previous).x * dirX + vertices.get(previous).y * dirY;
+			if (nextDot > dot || nextDot == dot && next < index) {
+				index = next;
+				dot = nextDot;
+			} else if (previousDot > dot || previousDot == dot && previous < index) {
+				index = previous;
+				dot = previousDot;
+			} else {
+				return index;
+			}
 		}
 	}
 
+	// Check whether the polygon is strictly convex - every corner turns the same
+	// way as the winding, by more than a sliver.
+	private boolean isStrictlyConvex() {
+		int numVertices = vertices.size();
+		for (int i = 0; i < numVertices; i++) {
+			PVector v0 = vertices.get(i);
+			PVector v1 = vertices.get((i + 1) % numVertices);
+			PVector v2 = vertices.get((i + 2) % numVertices);
+			float edge1X = v1.x - v0.x, edge1Y = v1.y - v0.y;
+			float edge2X = v2.x - v1.x, edge2Y = v2.y - v1.y;
+			float cross = (edge1X * edge2Y - edge1Y * edge2X) * winding;
+			float lengths = (float) Math
+					.sqrt((edge1X * edge1X + edge1Y * edge1Y) * (edge2X * edge2X + edge2Y * edge2Y));
+			if (cross <= PhysicalObject.SAME_EDGE_THRESHOLD * lengths) {
+				return false;
+			}
+		}
+		return true;
+	}
+
 	/**
 	 * Set properties of the rigid body from a key-value map.
 	 */
@@ -312,8 +1173,6 @@ public class CollisionMesh implements Component, PhysicalObject {
 				bounciness = val;
 			} else if (property.equals("calc_treshold")) {
 				ROTATION_CALC_THRESHOLD = val;
-			} else if (property.equals("add_for_collisions")) {
-				addForCollisions = (val != 0.0f);
 			}
 		}
 	}
@@ -323,7 +1182,10 @@ public class CollisionMesh implements Component, PhysicalObject {
 	/////////////////
 
 	/**
-	 * Constructor for a polygon-type CollisionMesh object.
+	 * Constructor for a polygon-type CollisionMesh object. The mesh collides with
+	 * the convex hull of the given vertices, which can be simplified further with
+	 * the "maxVertices" and "hullTolerance" properties - see
+	 * {@link Polygons#simplifyConvexPolygon}. Both are only read here.
 	 *
 	 * @param anchor     The anchor for the mesh's rotations.
 	 * @param vertices   The mesh's vertices defining the edge of the mesh/polygon.
@@ -333,17 +1195,25 @@ public class CollisionMesh implements Component, PhysicalObject {
 		this.savedAnchor = anchor.copy();
 		this.anchor = anchor.copy();
 		this.meshType = MeshType.POLYGON;
-		this.storageVertices = vertices;
-		this.vertices = vertices;
+		List<PVector> hull = Polygons.getConvexHull(vertices);
+		if (properties != null && (properties.containsKey("maxVertices") || properties.containsKey("hullTolerance"))) {
+			int maxVertices = properties.getOrDefault("maxVertices", Float.MAX_VALUE).intValue();
+			hull = Polygons.simplifyConvexPolygon(hull, maxVertices, properties.getOrDefault("hullTolerance", 0f));
+		}
+		this.storageVertices = hull;
+		this.vertices = hull;
+		this.winding = getWinding();
+		this.convex = isStrictlyConvex();
+		calculateNormals();
 		setProperties(properties);
 	}
 
 	/**
 	 * Constructor for a circle-type CollisionMesh object.
 	 *
-	 * @param anchor     The anchor for the collision mesh's rotations.
-	 * @param vertices   The mesh's vertices defining the edge of the mesh/polygon.
-	 * @param properties The surface proerties of the mesh.
+	 * @param anchor     The center of the circle, rotated with the mesh.
+	 * @param radius     The radius of the circle.
+	 * @param properties The surface properties of the mesh.
 	 */
 	public CollisionMesh(PVector anchor, float radius, Map<String, Float> properties) {
 		this.savedAnchor = anchor.copy();
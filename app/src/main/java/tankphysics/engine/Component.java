@@ -4,4 +4,12 @@ public interface Component {
 	public void attach(GameObject object);
 
 	public GameObject getObject();
+
+	/**
+	 * Get the handle the director gave the component when attaching it, which goes
+	 * stale once it is disattached.
+	 */
+	public long getHandle();
+
+	public void setHandle(long handle);
 }
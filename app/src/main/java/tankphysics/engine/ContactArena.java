@@ -0,0 +1,100 @@
+package tankphysics.engine;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Reusable memory for the narrowphase - scratch lists for the meshes paired in
+ * a collision check, scratch memory for queries in bodies' mesh trees, and a
+ * stack of spare contact manifolds, taken from pairs that ended and handed out
+ * to new pairs of meshes. An arena must only be used
+ * by one thread at a time, so parallel collision checks each get their own.
+ */
+class ContactArena {
+	private static final int MAX_SPARE_MANIFOLDS = 64;
+
+	// Meshes of each object overlapping the other object's bounds, cleared on each
+	// collision check.
+	final ArrayList<CollisionMesh> meshesA = new ArrayList<>();
+	final ArrayList<CollisionMesh> meshesB = new ArrayList<>();
+
+	// Mesh tree queries - the area in the body's frame, a mask of the meshes found
+	// and a traversal stack.
+	final AABB meshQueryArea = new AABB();
+	private long[] meshQueryMask = new long[1];
+	private int[] meshQueryStack = new int[16];
+
+	private CollisionDetails[] spareManifolds = new CollisionDetails[MAX_SPARE_MANIFOLDS];
+	private int numSpareManifolds = 0;
+
+	///////////////////////////
+	// Contact Arena Methods //
+	///////////////////////////
+
+	/**
+	 * Take a manifold for a pair of meshes, a spare one if there is any.
+	 *
+	 * @param meshA The 1st mesh of the pair.
+	 * @param meshB The 2nd mesh of the pair.
+	 *
+	 * @return A manifold with no points, cached axis or impulses.
+	 */
+	public CollisionDetails takeManifold(CollisionMesh meshA, CollisionMesh meshB) {
+		CollisionDetails details = numSpareManifolds > 0 ? spareManifolds[--numSpareManifolds]
+				: new CollisionDetails();
+		details.pairMeshA = meshA;
+		details.pairMeshB = meshB;
+		return details;
+	}
+
+	/**
+	 * Give back the manifolds of a pair that ended, to be handed out again. Only as
+	 * many manifolds as the arena has room for are kept.
+	 *
+	 * @param manifolds The manifolds to give back.
+	 */
+	public void recycle(ArrayList<CollisionDetails> manifolds) {
+		for (int i = 0; i < manifolds.size() && numSpareManifolds < MAX_SPARE_MANIFOLDS; i++) {
+			CollisionDetails details = manifolds.get(i);
+			details.recycle();
+			spareManifolds[numSpareManifolds++] = details;
+		}
+	}
+
+	/**
+	 * Get a cleared mask for a mesh tree query.
+	 *
+	 * @param numWords The number of 64 bit words needed.
+	 *
+	 * @return A mask with at least as many words, the first ones cleared.
+	 */
+	public long[] getMeshQueryMask(int numWords) {
+		if (meshQueryMask.length < numWords) {
+			meshQueryMask = new long[numWords];
+		} else {
+			Arrays.fill(meshQueryMask, 0, numWords, 0);
+		}
+		return meshQueryMask;
+	}
+
+	/**
+	 * Get a traversal stack for a mesh tree query.
+	 *
+	 * @param size The size of stack needed.
+	 *
+	 * @return A stack at least as big.
+	 */
+	public int[] getMeshQueryStack(int size) {
+		if (meshQueryStack.length < size) {
+			meshQueryStack = new int[size];
+		}
+		return meshQueryStack;
+	}
+
+	/**
+	 * Check whether the arena has room for more spare manifolds.
+	 */
+	public boolean isFull() {
+		return numSpareManifolds == MAX_SPARE_MANIFOLDS;
+	}
+}
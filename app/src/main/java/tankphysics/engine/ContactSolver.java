@@ -0,0 +1,547 @@
+package tankphysics.engine;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+import processing.core.PVector;
+
+/**
+ * Sequential impulse solver for the contacts of a simulation step. Contacts are
+ * gathered once per step into flat arrays, warm started from the impulses they
+ * accumulated on the last step, then solved over a fixed number of velocity
+ * iterations - clamping the accumulated impulses rather than each impulse - and
+ * position iterations correcting penetration. Based on Erin Catto's Box2D. cf.
+ * https://box2d.org/files/ErinCatto_SequentialImpulses_GDC2006.pdf
+ *
+ * Solving only touches the solver's own arrays and the manifolds added to it,
+ * so solvers of separate islands can solve on separate threads. Results are
+ * applied to the bodies when the solver is finished, on the calling thread.
+ */
+public class ContactSolver {
+	// Relative velocity under which contacts don't bounce, so resting contacts
+	// settle instead of jittering.
+	private static final float RESTITUTION_VELOCITY_THRESHOLD = 1f;
+	private static final float MAX_LINEAR_CORRECTION = 0.2f;
+
+	// Solver passes over the contacts
+	private static final int WARM_START = 0;
+	private static final int VELOCITY = 1;
+	private static final int POSITION = 2;
+
+	// Graph coloring - the last color holds the contacts left over once all other
+	// colors are taken, and is solved on a single thread.
+	private static final int MAX_COLORS = 64;
+	private static final int COLOR_GRAIN = 32;
+	private long[] bodyColors = new long[16];
+	private int[] contactColors = new int[16];
+	private int[] colorOrder = new int[16];
+	private int[] colorStart = new int[MAX_COLORS + 1];
+	private int[] colorCursor = new int[MAX_COLORS];
+	private ForkJoinPool pool;
+
+	// Bodies - slot 0 is shared by all static objects.
+	// Solver index of the bodies by id, only valid where the body at that index is
+	// the one with the id. Bodies without an id are kept in a map.
+	private int[] bodyIndices = new int[16];
+	private HashMap<PhysicalObject, Integer> bodyIndicesWithoutId = new HashMap<>();
+	private ArrayList<PhysicalObject> bodies = new ArrayList<>();
+	private int numBodies = 0;
+	private float[] velocityX = new float[16];
+	private float[] velocityY = new float[16];
+	private float[] angularVelocity = new float[16];
+	private float[] inverseMass = new float[16];
+	private float[] inverseInertia = new float[16];
+	private float[] centerX = new float[16];
+	private float[] centerY = new float[16];
+	private float[] correctionX = new float[16];
+	private float[] correctionY = new float[16];
+	private PVector bodyVelocity = new PVector();
+
+	// Contact points
+	private int numContacts = 0;
+	private CollisionDetails[] manifolds = new CollisionDetails[16];
+	private int[] points = new int[16];
+	private int[] bodyA = new int[16];
+	private int[] bodyB = new int[16];
+	private float[] normalX = new float[16];
+	private float[] normalY = new float[16];
+	private float[] radiusAX = new float[16];
+	private float[] radiusAY = new float[16];
+	private float[] radiusBX = new float[16];
+	private float[] radiusBY = new float[16];
+	private float[] normalMass = new float[16];
+	private float[] tangentMass = new float[16];
+	private float[] normalImpulse = new float[16];
+	private float[] tangentImpulse = new float[16];
+	private float[] velocityBias = new float[16];
+	private float[] staticFriction = new float[16];
+	private float[] dynamicFriction = new float[16];
+	private float[] separation = new float[16];
+
+	// Task running a pass over a range of the contacts of a color, split in halves
+	// over the pool's threads until ranges are small enough.
+	private class ColorBatchTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		int pass;
+		int start;
+		int end;
+
+		@Override
+		protected void compute() {
+			if (end - start <= COLOR_GRAIN) {
+				for (int i = start; i < end; i++) {
+					solveContact(pass, colorOrder[i]);
+				}
+			} else {
+				int middle = (start + end) / 2;
+				invokeAll(new ColorBatchTask(pass, start, middle), new ColorBatchTask(pass, middle, end));
+			}
+		}
+
+		ColorBatchTask(int pass, int start, int end) {
+			this.pass = pass;
+			this.start = start;
+			this.end = end;
+		}
+	}
+
+	/////////////////////////
+	// Getters and Setters //
+	/////////////////////////
+
+	public int getNumContacts() {
+		return numContacts;
+	}
+
+	////////////////////
+	// Solver Methods //
+	////////////////////
+
+	/**
+	 * Clear the solver of all bodies and contacts, for a new step.
+	 */
+	public void clear() {
+		for (int i = 1; i < numBodies; i++) {
+			bodies.set(i, null);
+		}
+		bodyIndicesWithoutId.clear();
+		numBodies = 1;
+		Arrays.fill(manifolds, 0, numContacts, null);
+		numContacts = 0;
+	}
+
+	/**
+	 * Add the contact points of a manifold to the solver. The manifold's impulses
+	 * from the last step are matched to its points by feature id.
+	 *
+	 * @param details The manifold to add.
+	 *
+	 * @return Whether the manifold is a hit - objects moving into each other
+	 *         deeper than the correction threshold.
+	 */
+	public boolean add(CollisionDetails details) {
+		int a = getBodyIndex(details.objA), b = getBodyIndex(details.objB);
+		float restitution = details.meshA.getBounciness() * details.meshB.getBounciness();
+		float frictionStatic = details.meshA.getStaticFriction() * details.meshB.getStaticFriction();
+		float frictionDynamic = details.meshA.getDynamicFriction() * details.meshB.getDynamicFriction();
+		float nx = details.normal.x, ny = details.normal.y;
+		details.matchImpulses();
+
+		boolean approaching = false;
+		for (int i = 0; i < details.numPoints; i++) {
+			ensureContactCapacity(numContacts + 1);
+			int c = numContacts++;
+			PVector point = details.points[i];
+			manifolds[c] = details;
+			points[c] = i;
+			bodyA[c] = a;
+			bodyB[c] = b;
+			normalX[c] = nx;
+			normalY[c] = ny;
+			radiusAX[c] = point.x - centerX[a];
+			radiusAY[c] = point.y - centerY[a];
+			radiusBX[c] = point.x - centerX[b];
+			radiusBY[c] = point.y - centerY[b];
+
+			// Effective mass along the normal and the tangent.
+			float rnA = radiusAX[c] * ny - radiusAY[c] * nx, rnB = radiusBX[c] * ny - radiusBY[c] * nx;
+			float rtA = radiusAX[c] * nx + radiusAY[c] * ny, rtB = radiusBX[c] * nx + radiusBY[c] * ny;
+			float massSum = inverseMass[a] + inverseMass[b];
+			float kNormal = massSum + inverseInertia[a] * rnA * rnA + inverseInertia[b] * rnB * rnB;
+			float kTangent = massSum + inverseInertia[a] * rtA * rtA + inverseInertia[b] * rtB * rtB;
+			normalMass[c] = kNormal > 0 ? 1 / kNormal : 0;
+			tangentMass[c] = kTangent > 0 ? 1 / kTangent : 0;
+
+			// Bounce off the relative velocity before solving.
+			float normalVelocity = getRelativeVelocityX(c) * nx + getRelativeVelocityY(c) * ny;
+			velocityBias[c] = normalVelocity < -RESTITUTION_VELOCITY_THRESHOLD ? -restitution * normalVelocity : 0;
+			approaching = approaching || normalVelocity <= 0;
+
+			normalImpulse[c] = details.normalImpulses[i];
+			tangentImpulse[c] = details.tangentImpulses[i];
+			staticFriction[c] = frictionStatic;
+			dynamicFriction[c] = frictionDynamic;
+			separation[c] = details.separations[i];
+		}
+		return approaching && -details.penetration > PhysicalObject.CORRECTION_THRESHOLD;
+	}
+
+	/**
+	 * Solve all contacts added since the solver was last cleared. The results are
+	 * only applied to the bodies once the solver is finished.
+	 *
+	 * @param velocityIterations The number of passes over the contacts solving
+	 *                           for velocity.
+	 * @param positionIterations The number of passes over the contacts correcting
+	 *                           penetration.
+	 */
+	public void solve(int velocityIterations, int positionIterations) {
+		for (int c = 0; c < numContacts; c++) {
+			solveContact(WARM_START, c);
+		}
+		for (int i = 0; i < velocityIterations; i++) {
+			for (int c = 0; c < numContacts; c++) {
+				solveContact(VELOCITY, c);
+			}
+		}
+		for (int i = 0; i < positionIterations; i++) {
+			for (int c = 0; c < numContacts; c++) {
+				solveContact(POSITION, c);
+			}
+		}
+		storeImpulses();
+	}
+
+	/**
+	 * Solve all contacts added since the solver was last cleared, colored so that
+	 * no 2 contacts of a color share a moving body. Contacts of a color are solved
+	 * in parallel, one color after the other. The contacts are solved in color
+	 * order whatever the pool, so results don't depend on the number of threads.
+	 *
+	 * @param velocityIterations The number of passes over the contacts solving
+	 *                           for velocity.
+	 * @param positionIterations The number of passes over the contacts correcting
+	 *                           penetration.
+	 * @param pool               The pool to solve colors on, or null to solve
+	 *                           them on the calling thread.
+	 */
+	public void solveColored(int velocityIterations, int positionIterations, ForkJoinPool pool) {
+		this.pool = pool;
+		colorContacts();
+		solveColors(WARM_START);
+		for (int i = 0; i < velocityIterations; i++) {
+			solveColors(VELOCITY);
+		}
+		for (int i = 0; i < positionIterations; i++) {
+			solveColors(POSITION);
+		}
+		storeImpulses();
+		this.pool = null;
+	}
+
+	/**
+	 * Apply the results of the last solve - call the impulse listeners of the
+	 * objects in contact, then write the new velocities and positions back to the
+	 * bodies.
+	 */
+	public void finish() {
+		callImpulseListeners();
+		writeBack();
+	}
+
+	// Get the index of a body in the solver, adding it if needed.
+	private int getBodyIndex(PhysicalObject obj) {
+		if (obj.getInverseMass() == 0 && obj.getInverseInertia() == 0) {
+			return 0;
+		}
+		int id = obj.getId();
+		if (id >= 0 && id < bodyIndices.length) {
+			int index = bodyIndices[id];
+			if (index > 0 && index < numBodies && bodies.get(index) == obj) {
+				return index;
+			}
+		} else if (id < 0) {
+			Integer index = bodyIndicesWithoutId.get(obj);
+			if (index != null) {
+				return index;
+			}
+		}
+		ensureBodyCapacity(numBodies + 1);
+		int i = numBodies++;
+		if (i < bodies.size()) {
+			bodies.set(i, obj);
+		} else {
+			bodies.add(obj);
+		}
+		if (id < 0) {
+			bodyIndicesWithoutId.put(obj, i);
+		} else {
+			if (id >= bodyIndices.length) {
+				bodyIndices = Arrays.copyOf(bodyIndices, Math.max(id + 1, bodyIndices.length * 2));
+			}
+			bodyIndices[id] = i;
+		}
+
+		obj.getVelocity(bodyVelocity);
+		PVector position = obj.getObject().getPosition(), centerOfMass = obj.getCOM();
+		velocityX[i] = bodyVelocity.x;
+		velocityY[i] = bodyVelocity.y;
+		angularVelocity[i] = obj.getRotationalVelocity();
+		inverseMass[i] = obj.getInverseMass();
+		inverseInertia[i] = obj.getInverseInertia();
+		centerX[i] = position.x + centerOfMass.x;
+		centerY[i] = position.y + centerOfMass.y;
+		correctionX[i] = 0;
+		correctionY[i] = 0;
+		return i;
+	}
+
+	// Get the velocity of body B relative to body A at a contact point.
+	private float getRelativeVelocityX(int c) {
+		int a = bodyA[c], b = bodyB[c];
+		return velocityX[b] - angularVelocity[b] * radiusBY[c] - velocityX[a] + angularVelocity[a] * radiusAY[c];
+	}
+
+	private float getRelativeVelocityY(int c) {
+		int a = bodyA[c], b = bodyB[c];
+		return velocityY[b] + angularVelocity[b] * radiusBX[c] - velocityY[a] - angularVelocity[a] * radiusAX[c];
+	}
+
+	// Apply an impulse at a contact point - to body B, and its opposite to body A.
+	private void applyImpulse(int c, float impulseX, float impulseY) {
+		int a = bodyA[c], b = bodyB[c];
+		velocityX[a] -= inverseMass[a] * impulseX;
+		velocityY[a] -= inverseMass[a] * impulseY;
+		angularVelocity[a] -= inverseInertia[a] * (radiusAX[c] * impulseY - radiusAY[c] * impulseX);
+		velocityX[b] += inverseMass[b] * impulseX;
+		velocityY[b] += inverseMass[b] * impulseY;
+		angularVelocity[b] += inverseInertia[b] * (radiusBX[c] * impulseY - radiusBY[c] * impulseX);
+	}
+
+	// Run a solver pass on a contact.
+	private void solveContact(int pass, int c) {
+		if (pass == WARM_START) {
+			warmStart(c);
+		} else if (pass == VELOCITY) {
+			solveVelocity(c);
+		} else {
+			solvePosition(c);
+		}
+	}
+
+	// Greedily give each contact the first color not used by either of its moving
+	// bodies, then sort the contacts by color.
+	private void colorContacts() {
+		if (bodyColors.length < numBodies) {
+			bodyColors = new long[velocityX.length];
+		}
+		if (contactColors.length < numContacts) {
+			contactColors = new int[points.length];
+			colorOrder = new int[points.length];
+		}
+		Arrays.fill(bodyColors, 0, numBodies, 0);
+		Arrays.fill(colorStart, 0);
+		for (int c = 0; c < numContacts; c++) {
+			int a = bodyA[c], b = bodyB[c];
+			long used = (a != 0 ? bodyColors[a] : 0) | (b != 0 ? bodyColors[b] : 0);
+			int color = Math.min(Long.numberOfTrailingZeros(~used), MAX_COLORS - 1);
+			if (color < MAX_COLORS - 1) {
+				bodyColors[a] |= a != 0 ? 1L << color : 0;
+				bodyColors[b] |= b != 0 ? 1L << color : 0;
+			}
+			contactColors[c] = color;
+			colorStart[color + 1]++;
+		}
+		for (int i = 0; i < MAX_COLORS; i++) {
+			colorStart[i + 1] += colorStart[i];
+		}
+		System.arraycopy(colorStart, 0, colorCursor, 0, MAX_COLORS);
+		for (int c = 0; c < numContacts; c++) {
+			colorOrder[colorCursor[contactColors[c]]++] = c;
+		}
+	}
+
+	// Run a solver pass over the contacts, one color after the other.
+	private void solveColors(int pass) {
+		for (int color = 0; color < MAX_COLORS; color++) {
+			int start = colorStart[color], end = colorStart[color + 1];
+			if (pool == null || color == MAX_COLORS - 1 || end - start <= COLOR_GRAIN) {
+				for (int i = start; i < end; i++) {
+					solveContact(pass, colorOrder[i]);
+				}
+			} else if (ForkJoinTask.inForkJoinPool()) {
+				new ColorBatchTask(pass, start, end).invoke();
+			} else {
+				pool.invoke(new ColorBatchTask(pass, start, end));
+			}
+		}
+	}
+
+	// Apply the impulses a contact accumulated on the last step, which are usually
+	// close to the solution for resting contacts.
+	private void warmStart(int c) {
+		float tangentX = normalY[c], tangentY = -normalX[c];
+		applyImpulse(c, normalX[c] * normalImpulse[c] + tangentX * tangentImpulse[c],
+				normalY[c] * normalImpulse[c] + tangentY * tangentImpulse[c]);
+	}
+
+	// Solve friction then non-penetration on a contact. Friction is limited by the
+	// static friction of the contact until it slides, then by its dynamic
+	// friction.
+	private void solveVelocity(int c) {
+		float tangentX = normalY[c], tangentY = -normalX[c];
+
+		// Friction
+		float tangentVelocity = getRelativeVelocityX(c) * tangentX + getRelativeVelocityY(c) * tangentY;
+		float newImpulse = tangentImpulse[c] - tangentMass[c] * tangentVelocity;
+		float maxFriction = staticFriction[c] * normalImpulse[c];
+		if (Math.abs(newImpulse) > maxFriction) {
+			maxFriction = dynamicFriction[c] * normalImpulse[c];
+			newImpulse = Math.max(-maxFriction, Math.min(newImpulse, maxFriction));
+		}
+		float lambda = newImpulse - tangentImpulse[c];
+		tangentImpulse[c] = newImpulse;
+		applyImpulse(c, tangentX * lambda, tangentY * lambda);
+
+		// Non-penetration
+		float normalVelocity = getRelativeVelocityX(c) * normalX[c] + getRelativeVelocityY(c) * normalY[c];
+		newImpulse = Math.max(normalImpulse[c] - normalMass[c] * (normalVelocity - velocityBias[c]), 0);
+		lambda = newImpulse - normalImpulse[c];
+		normalImpulse[c] = newImpulse;
+		applyImpulse(c, normalX[c] * lambda, normalY[c] * lambda);
+	}
+
+	// Push the bodies of a contact apart by a fraction of their penetration past
+	// the correction threshold, in proportion to their inverse mass. The
+	// separation is updated from the corrections already made to the bodies.
+	// Corrections are linear only, as small rotations are not applied to the
+	// vertices of collision meshes.
+	private void solvePosition(int c) {
+		int a = bodyA[c], b = bodyB[c];
+		float massSum = inverseMass[a] + inverseMass[b];
+		if (massSum == 0) {
+			return;
+		}
+		float moveX = correctionX[b] - correctionX[a], moveY = correctionY[b] - correctionY[a];
+		float currentSeparation = separation[c] + moveX * normalX[c] + moveY * normalY[c];
+		float correction = Math.max(-MAX_LINEAR_CORRECTION, Math.min(
+				PhysicalObject.CORRECTION_PERCENTAGE * (currentSeparation + PhysicalObject.CORRECTION_THRESHOLD), 0));
+		float impulse = -correction / massSum;
+		float impulseX = normalX[c] * impulse, impulseY = normalY[c] * impulse;
+
+		correctionX[a] -= inverseMass[a] * impulseX;
+		correctionY[a] -= inverseMass[a] * impulseY;
+		correctionX[b] += inverseMass[b] * impulseX;
+		correctionY[b] += inverseMass[b] * impulseY;
+	}
+
+	// Store the accumulated impulses in the manifolds, to warm start the next step.
+	private void storeImpulses() {
+		for (int c = 0; c < numContacts; c++) {
+			manifolds[c].normalImpulses[points[c]] = normalImpulse[c];
+			manifolds[c].tangentImpulses[points[c]] = tangentImpulse[c];
+		}
+	}
+
+	// Call the impulse listeners of both objects of each contact point with the
+	// total impulse applied at the point. Listeners may change the impulse, in
+	// which case the change is applied to the listener's body.
+	private void callImpulseListeners() {
+		for (int c = 0; c < numContacts; c++) {
+			CollisionDetails details = manifolds[c];
+			float tangentX = normalY[c], tangentY = -normalX[c];
+			float impulseX = normalX[c] * normalImpulse[c] + tangentX * tangentImpulse[c];
+			float impulseY = normalY[c] * normalImpulse[c] + tangentY * tangentImpulse[c];
+			callImpulseListeners(c, details.objA, details.objB, bodyA[c], -impulseX, -impulseY, radiusAX[c],
+					radiusAY[c]);
+			callImpulseListeners(c, details.objB, details.objA, bodyB[c], impulseX, impulseY, radiusBX[c],
+					radiusBY[c]);
+		}
+	}
+
+	private void callImpulseListeners(int c, PhysicalObject obj, PhysicalObject ref, int body, float impulseX,
+			float impulseY, float radiusX, float radiusY) {
+		Iterable<EngineEventListener> listeners = obj.getObject().getListeners("impulse");
+		if (!listeners.iterator().hasNext()) {
+			return;
+		}
+		PVector impulse = new PVector(impulseX, impulseY);
+		for (EngineEventListener l : listeners) {
+			l.call(ref.getObject(), impulse);
+		}
+		if (body != 0) {
+			float changeX = impulse.x - impulseX, changeY = impulse.y - impulseY;
+			velocityX[body] += inverseMass[body] * changeX;
+			velocityY[body] += inverseMass[body] * changeY;
+			angularVelocity[body] += inverseInertia[body] * (radiusX * changeY - radiusY * changeX);
+		}
+	}
+
+	// Write the solved velocities and position corrections back to the bodies.
+	private void writeBack() {
+		for (int i = 1; i < numBodies; i++) {
+			PhysicalObject obj = bodies.get(i);
+			obj.setVelocity(velocityX[i], velocityY[i]);
+			obj.setRotationalVelocity(angularVelocity[i]);
+			if (correctionX[i] != 0 || correctionY[i] != 0) {
+				PVector position = obj.getObject().getPosition();
+				obj.setPosition(position.x + correctionX[i], position.y + correctionY[i]);
+			}
+		}
+	}
+
+	private void ensureBodyCapacity(int capacity) {
+		if (capacity <= velocityX.length) {
+			return;
+		}
+		int length = Math.max(capacity, velocityX.length * 2);
+		velocityX = Arrays.copyOf(velocityX, length);
+		velocityY = Arrays.copyOf(velocityY, length);
+		angularVelocity = Arrays.copyOf(angularVelocity, length);
+		inverseMass = Arrays.copyOf(inverseMass, length);
+		inverseInertia = Arrays.copyOf(inverseInertia, length);
+		centerX = Arrays.copyOf(centerX, length);
+		centerY = Arrays.copyOf(centerY, length);
+		correctionX = Arrays.copyOf(correctionX, length);
+		correctionY = Arrays.copyOf(correctionY, length);
+	}
+
+	private void ensureContactCapacity(int capacity) {
+		if (capacity <= points.length) {
+			return;
+		}
+		int length = Math.max(capacity, points.length * 2);
+		manifolds = Arrays.copyOf(manifolds, length);
+		points = Arrays.copyOf(points, length);
+		bodyA = Arrays.copyOf(bodyA, length);
+		bodyB = Arrays.copyOf(bodyB, length);
+		normalX = Arrays.copyOf(normalX, length);
+		normalY = Arrays.copyOf(normalY, length);
+		radiusAX = Arrays.copyOf(radiusAX, length);
+		radiusAY = Arrays.copyOf(radiusAY, length);
+		radiusBX = Arrays.copyOf(radiusBX, length);
+		radiusBY = Arrays.copyOf(radiusBY, length);
+		normalMass = Arrays.copyOf(normalMass, length);
+		tangentMass = Arrays.copyOf(tangentMass, length);
+		normalImpulse = Arrays.copyOf(normalImpulse, length);
+		tangentImpulse = Arrays.copyOf(tangentImpulse, length);
+		velocityBias = Arrays.copyOf(velocityBias, length);
+		staticFriction = Arrays.copyOf(staticFriction, length);
+		dynamicFriction = Arrays.copyOf(dynamicFriction, length);
+		separation = Arrays.copyOf(separation, length);
+	}
+
+	//////////////////
+	// Constructors //
+	//////////////////
+
+	public ContactSolver() {
+		bodies.add(null);
+		numBodies = 1;
+	}
+}
@@ -1,14 +1,17 @@
 package tankphysics.engine;
 
-import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntConsumer;
+import java.util.function.Predicate;
 
 import processing.core.PApplet;
 import processing.core.PMatrix2D;
@@ -17,9 +20,10 @@ import processing.core.PVector;
 public class Director {
 	// World
 	private PApplet sketch;
-	private HashSet<GameObject> world = new HashSet<>();
+	private HandleAllocator<GameObject> world = new HandleAllocator<>(64);
+	private HandleAllocator<Component> components = new HandleAllocator<>(64);
 	private float targetSecondsPerFrame = 1f / 144;
-	private static final int COLLISION_CHECK_PER_FRAME_LIMIT = 2;
+	private static final float CONTINUOUS_PENETRATION = 2 * PhysicalObject.CORRECTION_THRESHOLD;
 
 	// Visuals
 	private GameObject camera;
@@ -30,14 +34,41 @@ public class Director {
 	private long lastTimeStamp = new Date().getTime();
 	private float deltaT = 0;
 	private final Force GRAVITY = new Force(new PVector(0, 9.18f), false, true);
-	private HashMap<RigidBody, HashSet<Force>> bodies = new HashMap<>();
-	private HashSet<PhysicalObject> colliders = new HashSet<>();
+	private BodyStore bodies = new BodyStore(16);
+	private HashSet<PhysicalObject> colliders = new LinkedHashSet<>();
 	public boolean pause = false;
 	public boolean ready = false;
 
 	// Force handling
-	private HashMap<PhysicalObject, HashSet<Pair>> objectMap = new HashMap<>();
-	private HashSet<Pair> activePairs = new HashSet<>();
+	private Broadphase broadphase = new DynamicAABBTree();
+	private StaticBVH staticLayer = null;
+	private ArrayList<PhysicalObject> staticCandidates = new ArrayList<>();
+	private ArrayList<Pair> candidatePairs = new ArrayList<>();
+	// Scratch manifolds of local updates, given back to the first arena after each
+	// pair is checked, as local updates keep no pairs.
+	private ArrayList<CollisionDetails> localManifolds = new ArrayList<>();
+	private ArrayList<ContactArena> arenas = new ArrayList<>(List.of(new ContactArena()));
+	private PairTable<Pair> pairs = new PairTable<>();
+	private int frame = 0;
+
+	// Contact solving
+	private ArrayList<Pair> hitPairs = new ArrayList<>();
+	private int velocityIterations = 8;
+	private int positionIterations = 3;
+
+	// Islands and sleeping
+	private static final int PARALLEL_MIN_PAIRS = 64;
+	private static final int COLORING_MIN_CONTACTS = 128;
+	private ForkJoinPool solverPool = ForkJoinPool.commonPool();
+	private boolean graphColoring = false;
+	private ArrayList<Island> islands = new ArrayList<>();
+	private ArrayList<Island> awakeIslands = new ArrayList<>();
+	private ArrayList<Pair> wokenPairs = new ArrayList<>();
+	private int numIslands = 0;
+	private boolean sleepingEnabled = true;
+	private float timeToSleep = 0.5f;
+	private float sleepLinearVelocity = 0.05f;
+	private float sleepRotationalVelocity = 0.05f;
 
 	// Director's event listener list
 	private HashMap<String, HashSet<EngineEventListener>> listeners = new HashMap<>(
@@ -50,27 +81,57 @@ public class Director {
 	private static final float SIMULATION_TIMEOUT_SECONDS = 15;
 
 	// Class representing a pair of physical objects interacting together in
-	// collisions.
+	// collisions. Pairs persist while the broadphase keeps reporting them, along
+	// with their manifolds, in a table keyed by the ids of the objects.
 	class Pair {
 		PhysicalObject obj1;
 		PhysicalObject obj2;
+		ArrayList<CollisionDetails> manifolds = new ArrayList<>();
+		int lastFrame;
 
-		@Override
-		public int hashCode() {
-			return obj1.hashCode() + obj2.hashCode();
+		public Pair(PhysicalObject obj1, PhysicalObject obj2) {
+			this.obj1 = obj1;
+			this.obj2 = obj2;
 		}
+	}
+
+	// Class representing an island - a group of rigid bodies linked by contacts,
+	// with the pairs in contact. Islands are solved, and fall asleep, on their own.
+	class Island {
+		ArrayList<RigidBody> bodies = new ArrayList<>();
+		ArrayList<Pair> pairs = new ArrayList<>();
+		ArrayList<Pair> hitPairs = new ArrayList<>();
+		ContactSolver solver = new ContactSolver();
+		boolean awake;
+	}
+
+	// Task running an action over a range of indices, split in halves over the
+	// pool's threads until ranges are small enough.
+	private static class RangeTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
 
-		public boolean equals(Object obj) {
-			if (obj instanceof Pair) {
-				Pair p = (Pair) obj;
-				return (this.obj1 == p.obj1 && this.obj2 == p.obj2) || (this.obj1 == p.obj2 && this.obj2 == p.obj1);
+		IntConsumer action;
+		int start;
+		int end;
+		int grain;
+
+		@Override
+		protected void compute() {
+			if (end - start <= grain) {
+				for (int i = start; i < end; i++) {
+					action.accept(i);
+				}
+			} else {
+				int middle = (start + end) / 2;
+				invokeAll(new RangeTask(action, start, middle, grain), new RangeTask(action, middle, end, grain));
 			}
-			return false;
 		}
 
-		public Pair(PhysicalObject obj1, PhysicalObject obj2) {
-			this.obj1 = obj1;
-			this.obj2 = obj2;
+		RangeTask(IntConsumer action, int start, int end, int grain) {
+			this.action = action;
+			this.start = start;
+			this.end = end;
+			this.grain = grain;
 		}
 	}
 
@@ -93,7 +154,7 @@ public class Director {
 	}
 
 	public void setCamera(GameObject camera) {
-		if (world.contains(camera)) {
+		if (isAttached(camera)) {
 			this.camera = camera;
 		} else {
 		}
@@ -107,16 +168,68 @@ public class Director {
 		this.visuals = visuals;
 	}
 
-	public HashMap<RigidBody, HashSet<Force>> getBodies() {
-		return bodies;
+	/**
+	 * Get a read-only view of the rigid bodies in the world.
+	 */
+	public List<RigidBody> getBodies() {
+		return bodies.asList();
+	}
+
+	/**
+	 * Get the game objects in the world, in the order of their handles.
+	 */
+	public List<GameObject> getWorld() {
+		List<GameObject> ret = new ArrayList<>();
+		for (int i = 0; i < world.getCapacity(); i++) {
+			if (world.getAt(i) != null) {
+				ret.add(world.getAt(i));
+			}
+		}
+		return ret;
+	}
+
+	/**
+	 * Get the game object a handle was given to.
+	 *
+	 * @param handle The handle of the game object.
+	 *
+	 * @return The game object, or null if it left the world since.
+	 */
+	public GameObject getObject(long handle) {
+		return world.get(handle);
 	}
 
-	public void setBodies(HashMap<RigidBody, HashSet<Force>> bodies) {
-		this.bodies = bodies;
+	/**
+	 * Get the component a handle was given to.
+	 *
+	 * @param handle The handle of the component.
+	 *
+	 * @return The component, or null if it left the world since.
+	 */
+	public Component getComponent(long handle) {
+		return components.get(handle);
 	}
 
-	public HashSet<GameObject> getWorld() {
-		return world;
+	public boolean isAttached(GameObject obj) {
+		return world.get(obj.handle) == obj;
+	}
+
+	public boolean isAttached(Component c) {
+		return components.get(c.getHandle()) == c;
+	}
+
+	public float getTargetSecondsPerFrame() {
+		return targetSecondsPerFrame;
+	}
+
+	/**
+	 * Set the fixed timestep of the simulation. Fast bodies should use continuous
+	 * collision detection if the timestep is raised.
+	 *
+	 * @param targetSecondsPerFrame The duration of a simulation step in seconds.
+	 */
+	public void setTargetSecondsPerFrame(float targetSecondsPerFrame) {
+		this.targetSecondsPerFrame = targetSecondsPerFrame;
 	}
 
 	public boolean isPaused() {
@@ -128,7 +241,153 @@ public class Director {
 		this.pause = pause;
 	}
 
+	public int getVelocityIterations() {
+		return velocityIterations;
+	}
+
+	/**
+	 * Set the number of passes the contact solver makes over all contacts to solve
+	 * their velocities each step. More iterations make stacks stiffer, at a cost
+	 * growing linearly with the number of contacts.
+	 *
+	 * @param velocityIterations The number of velocity iterations per step.
+	 */
+	public void setVelocityIterations(int velocityIterations) {
+		this.velocityIterations = velocityIterations;
+	}
+
+	public int getPositionIterations() {
+		return positionIterations;
+	}
+
+	/**
+	 * Set the number of passes the contact solver makes over all contacts to
+	 * correct their penetration each step.
+	 *
+	 * @param positionIterations The number of position iterations per step.
+	 */
+	public void setPositionIterations(int positionIterations) {
+		this.positionIterations = positionIterations;
+	}
+
+	public ForkJoinPool getSolverPool() {
+		return solverPool;
+	}
+
+	/**
+	 * Set the pool islands are solved on in parallel. Islands are independent, and
+	 * their results are applied in the same order whatever thread solved them, so
+	 * simulations stay deterministic.
+	 *
+	 * @param solverPool The pool to solve islands on, or null to solve them on the
+	 *                   calling thread.
+	 */
+	public void setSolverPool(ForkJoinPool solverPool) {
+		this.solverPool = solverPool;
+	}
+
+	public boolean isGraphColoring() {
+		return graphColoring;
+	}
+
+	/**
+	 * Set whether large islands are solved with graph coloring. Their contacts are
+	 * split into colors where no 2 contacts share a moving body, and the contacts
+	 * of a color are solved in parallel on the solver pool. This lets a single
+	 * large pile use several threads. Contacts are solved in a different order,
+	 * so results differ from solving without coloring, but not with the pool.
+	 *
+	 * @param graphColoring Whether to solve large islands with graph coloring.
+	 */
+	public void setGraphColoring(boolean graphColoring) {
+		this.graphColoring = graphColoring;
+	}
+
+	public boolean isSleepingEnabled() {
+		return sleepingEnabled;
+	}
+
+	/**
+	 * Set whether islands of resting rigid bodies fall asleep. Disabling sleeping
+	 * wakes all rigid bodies up.
+	 *
+	 * @param sleepingEnabled Whether rigid bodies can sleep.
+	 */
+	public void setSleepingEnabled(boolean sleepingEnabled) {
+		this.sleepingEnabled = sleepingEnabled;
+		if (!sleepingEnabled) {
+			for (int i = 0; i < bodies.size(); i++) {
+				bodies.bodies[i].setAwake(true);
+			}
+		}
+	}
+
+	public float getTimeToSleep() {
+		return timeToSleep;
+	}
+
+	/**
+	 * Set how long all rigid bodies of an island must rest before the island falls
+	 * asleep.
+	 *
+	 * @param timeToSleep The resting time in seconds.
+	 */
+	public void setTimeToSleep(float timeToSleep) {
+		this.timeToSleep = timeToSleep;
+	}
+
+	public float getSleepLinearVelocity() {
+		return sleepLinearVelocity;
+	}
+
+	public void setSleepLinearVelocity(float sleepLinearVelocity) {
+		this.sleepLinearVelocity = sleepLinearVelocity;
+	}
+
+	public float getSleepRotationalVelocity() {
+		return sleepRotationalVelocity;
+	}
+
+	public void setSleepRotationalVelocity(float sleepRotationalVelocity) {
+		this.sleepRotationalVelocity = sleepRotationalVelocity;
+	}
+
+	public Broadphase getBroadphase() {
+		return broadphase;
+	}
+
+	/**
+	 * Set the broadphase used to find pairs of colliding rigid bodies. All rigid
+	 * bodies already in the world are moved to the new broadphase.
+	 *
+	 * @param broadphase The broadphase to use, e.g. a DynamicAABBTree, a
+	 *                   SweepAndPrune or a SpatialHashGrid.
+	 */
+	public void setBroadphase(Broadphase broadphase) {
+		for (int i = 0; i < bodies.size(); i++) {
+			broadphase.add(bodies.bodies[i]);
+		}
+		this.broadphase = broadphase;
+	}
+
+	/**
+	 * Get the static collision layer, holding all immovable collision meshes. The
+	 * layer is rebuilt if static meshes were attached or disattached since it was
+	 * last built.
+	 */
+	public StaticBVH getStaticLayer() {
+		if (staticLayer == null) {
+			staticLayer = new StaticBVH(colliders);
+		}
+		return staticLayer;
+	}
+
+	/**
+	 * Set the director as ready to run, baking all immovable collision meshes in
+	 * the world into the static collision layer.
+	 */
 	public void setReady() {
+		staticLayer = new StaticBVH(colliders);
 		ready = true;
 	}
 
@@ -144,8 +403,8 @@ public class Director {
 	 * @param obj The GameObject to distach.
 	 */
 	public void disattach(GameObject obj) {
-		if (world.contains(obj)) {
-			world.remove(obj);
+		if (isAttached(obj)) {
+			world.free(obj.handle);
 			for (Component c : obj.getComponents()) {
 				disattachComponent(c);
 			}
@@ -161,36 +420,28 @@ public class Director {
 	}
 
 	public void disattachComponent(Component c) {
+		if (!isAttached(c)) {
+			return;
+		}
 		if (c instanceof VisualModel) {
 			if (visuals.contains(c)) {
 				visuals.remove(c);
 			} else if (topVisuals.contains(c)) {
 				topVisuals.remove(c);
 			}
-		}
-		if (c instanceof PhysicalObject
-				&& (bodies.containsKey((PhysicalObject) c) || colliders.contains((PhysicalObject) c))) {
+		} else if (c instanceof PhysicalObject) {
 			PhysicalObject cPhys = (PhysicalObject) c;
+			removePairs(cPhys);
 			if (c instanceof RigidBody) {
-				bodies.remove(c);
+				bodies.remove((RigidBody) c);
+				broadphase.remove(cPhys);
 			} else {
 				colliders.remove(cPhys);
+				staticLayer = null;
 			}
-			HashSet<Pair> objPairs = objectMap.get(cPhys);
-			Iterator<Pair> setIterator = activePairs.iterator();
-			while (setIterator.hasNext()) {
-				Pair next = setIterator.next();
-				if (objPairs.contains(next)) {
-					setIterator.remove();
-				}
-			}
-			for (Pair next : objPairs) {
-				PhysicalObject rm = next.obj1 == c ? next.obj2 : next.obj1;
-				objectMap.get(rm).remove(next);
-			}
-			objectMap.remove(cPhys);
 		}
-
+		// Free the handle last, the pairs of physical objects are keyed by it.
+		components.free(c.getHandle());
 	}
 
 	/**
@@ -201,7 +452,9 @@ public class Director {
 	 */
 	public void attach(GameObject... objects) {
 		for (GameObject object : objects) {
-			world.add(object);
+			if (!isAttached(object)) {
+				object.handle = world.allocate(object);
+			}
 			for (Component c : object.getComponents()) {
 				attachComponent(c);
 			}
@@ -217,6 +470,10 @@ public class Director {
 	 * @param c The component to attach to the director.
 	 */
 	public void attachComponent(Component c) {
+		if (isAttached(c)) {
+			return;
+		}
+		c.setHandle(components.allocate(c));
 		if (c instanceof VisualModel) {
 			if (c.getObject().isOnTop()) {
 				topVisuals.add((VisualModel) c);
@@ -225,30 +482,12 @@ public class Director {
 			}
 		} else if (c instanceof PhysicalObject) {
 			PhysicalObject cPhys = (PhysicalObject) c;
-			objectMap.put(cPhys, new HashSet<>());
-
-			// Add all new rigid body interactions to list of pairs
-			for (RigidBody b : bodies.keySet()) {
-				if (b.addForCollisions()) {
-					Pair newPair = new Pair(cPhys, b);
-					activePairs.add(newPair);
-					objectMap.get(cPhys).add(newPair);
-					objectMap.get(b).add(newPair);
-				}
-			}
 			if (c instanceof RigidBody) {
-				// Add all collision mesh interactions to list of pairs.
-				for (PhysicalObject mesh : colliders) {
-					if (mesh.addForCollisions()) {
-						Pair newPair = new Pair(cPhys, mesh);
-						activePairs.add(newPair);
-						objectMap.get(cPhys).add(newPair);
-						objectMap.get(mesh).add(newPair);
-					}
-				}
-				bodies.put((RigidBody) c, new HashSet<>(Arrays.asList(GRAVITY)));
+				bodies.add((RigidBody) c, new LinkedHashSet<>(Arrays.asList(GRAVITY)));
+				broadphase.add(cPhys);
 			} else {
 				colliders.add(cPhys);
+				staticLayer = null;
 			}
 		}
 	}
@@ -260,8 +499,8 @@ public class Director {
 	 * @param f The force affecting the rigid body.
 	 */
 	public void addForce(RigidBody b, Force f) {
-		if (bodies.containsKey(b) && !bodies.get(b).contains(f)) {
-			bodies.get(b).add(f);
+		if (bodies.contains(b) && bodies.getForces(b.slot).add(f)) {
+			b.setAwake(true);
 		}
 	}
 
@@ -272,46 +511,8 @@ public class Director {
 	 * @param f The force to remove from the rigid body.
 	 */
 	public void removeForce(RigidBody b, Force f) {
-		if (bodies.containsKey(b) && bodies.get(b).contains(f)) {
-			bodies.get(b).remove(f);
-		}
-	}
-
-	/**
-	 * Remove collisions on the director between one object and another.
-	 *
-	 * @param objA 1st object of pair to remove.
-	 * @param objB 2nd object of pair to remove.
-	 */
-	public void removeCollisions(PhysicalObject objA, PhysicalObject objB) {
-		if (world.contains(objA.getObject()) && world.contains(objB.getObject())) {
-			Pair currentPair = new Pair(objA, objB);
-			if (activePairs.contains(currentPair)) {
-				activePairs.remove(currentPair);
-				objectMap.get(objA).remove(currentPair);
-				objectMap.get(objB).remove(currentPair);
-			}
-		}
-	}
-
-	/**
-	 * Remove all collisions for a physical object but the ones with a given set of
-	 * physical objects.
-	 *
-	 * @param target The physical object to remove collisions for
-	 * @param keep   The list of physical objects to keep collisions for.
-	 */
-	public void removeCollisionsForAllBut(PhysicalObject target, PhysicalObject... keep) {
-		HashSet<PhysicalObject> keepSet = new HashSet<>(Arrays.asList(keep));
-		for (PhysicalObject o : colliders) {
-			if (o != target && !keepSet.contains(o)) {
-				removeCollisions(target, o);
-			}
-		}
-		for (PhysicalObject o : bodies.keySet()) {
-			if (o != target && !keepSet.contains(o)) {
-				removeCollisions(target, o);
-			}
+		if (bodies.contains(b) && bodies.getForces(b.slot).remove(f)) {
+			b.setAwake(true);
 		}
 	}
 
@@ -366,42 +567,98 @@ public class Director {
 	public void update() {
 		updateListeners();
 
-		// Apply forces to rigid bodies
-		for (RigidBody b : bodies.keySet()) {
-			b.apply(bodies.get(b).stream(), targetSecondsPerFrame);
+		// Apply forces to awake rigid bodies
+		for (int i = 0; i < bodies.size(); i++) {
+			if (bodies.awake[i]) {
+				bodies.bodies[i].apply(bodies.getForces(i), targetSecondsPerFrame);
+			}
 		}
 
-		// Apply collision check for inert mesh to rigid body
-		ArrayDeque<Pair> queue = new ArrayDeque<>(activePairs);
-		HashMap<Pair, Integer> donePairs = new HashMap<>();
-		HashSet<Pair> collidedPairs = new HashSet<>();
-		while (!queue.isEmpty()) {
-			Pair next = queue.pop();
-			if (donePairs.containsKey(next)) {
-				if (donePairs.get(next) >= COLLISION_CHECK_PER_FRAME_LIMIT) {
-					continue;
-				}
-				donePairs.replace(next, donePairs.get(next) + 1);
-			} else {
-				donePairs.put(next, 1);
+		// Sweep continuous bodies against where the other objects are after moving,
+		// so the broadphase is brought up to date first.
+		broadphase.update();
+		for (int i = 0; i < bodies.size(); i++) {
+			RigidBody b = bodies.bodies[i];
+			if (bodies.awake[i] && b.isContinuous()) {
+				applyContinuousCollision(b);
 			}
+		}
 
-			if (PhysicalObject.requiresCollisionCheck(next.obj1, next.obj2)) {
-				boolean collided = PhysicalObject.applyCollisionAndBounce(next.obj1, next.obj2);
+		// Get candidate pairs from the broadphase
+		frame++;
+		candidatePairs.clear();
+		broadphase.findPairs(this::addCandidatePair);
+		StaticBVH statics = getStaticLayer();
+		for (int i = 0; i < bodies.size(); i++) {
+			RigidBody b = bodies.bodies[i];
+			staticCandidates.clear();
+			statics.query(broadphase.getBounds(b), staticCandidates);
+			for (PhysicalObject mesh : staticCandidates) {
+				addCandidatePair(b, mesh);
+			}
+		}
+		pairs.removeIf((p) -> {
+			if (p.lastFrame != frame) {
+				recycle(p);
+				return true;
+			}
+			return false;
+		});
+
+		// Bring the bounds and mesh trees of the objects in pairs up to date, so
+		// computing contacts only reads them.
+		for (int i = 0; i < candidatePairs.size(); i++) {
+			candidatePairs.get(i).obj1.updateBounds();
+			candidatePairs.get(i).obj2.updateBounds();
+		}
 
-				// Add previous object linked pairs to queue for collision recalculation.
-				if (collided) {
-					HashSet<Pair> nextElements = new HashSet<>(objectMap.get(next.obj1));
-					nextElements.addAll(objectMap.get(next.obj2));
-					nextElements.remove(next);
-					queue.addAll(nextElements);
-					collidedPairs.add(next);
+		// Compute the contacts of all pairs once, in parallel if there are enough,
+		// over chunks of pairs with an arena each. Each pair writes to its own
+		// manifolds, so no merge is needed.
+		if (isParallel(candidatePairs.size(), PARALLEL_MIN_PAIRS)) {
+			int numChunks = solverPool.getParallelism() * 4;
+			while (arenas.size() < numChunks) {
+				arenas.add(new ContactArena());
+			}
+			runParallel((chunk) -> {
+				int start = candidatePairs.size() * chunk / numChunks;
+				int end = candidatePairs.size() * (chunk + 1) / numChunks;
+				for (int i = start; i < end; i++) {
+					updateContacts(candidatePairs.get(i), arenas.get(chunk));
 				}
+			}, numChunks);
+		} else {
+			for (int i = 0; i < candidatePairs.size(); i++) {
+				updateContacts(candidatePairs.get(i), arenas.get(0));
+			}
+		}
+
+		// Solve awake islands on their own, in parallel if there are enough
+		// contacts to be worth it. Their results are then applied in island order.
+		buildIslands();
+		awakeIslands.clear();
+		int awakePairs = 0;
+		for (int i = 0; i < numIslands; i++) {
+			if (islands.get(i).awake) {
+				awakeIslands.add(islands.get(i));
+				awakePairs += islands.get(i).pairs.size();
 			}
 		}
-		for (Pair next : collidedPairs) {
+		if (awakeIslands.size() > 1 && isParallel(awakePairs, PARALLEL_MIN_PAIRS)) {
+			runParallel((i) -> solveIsland(awakeIslands.get(i)), awakeIslands.size());
+		} else {
+			for (Island island : awakeIslands) {
+				solveIsland(island);
+			}
+		}
+		hitPairs.clear();
+		for (Island island : awakeIslands) {
+			finishIsland(island);
+		}
+
+		for (Pair next : hitPairs) {
 			// Call on hit events on both GameObjects.
-			if (world.contains(next.obj1.getObject()) && world.contains(next.obj2.getObject())) {
+			if (isAttached(next.obj1.getObject()) && isAttached(next.obj2.getObject())) {
 				for (EngineEventListener l : next.obj1.getObject().getListeners("onHit")) {
 					l.call(next.obj2.getObject(), next.obj2);
 				}
@@ -412,6 +669,241 @@ public class Director {
 		}
 	}
 
+	// Compute the contacts of a pair with an awake body. Pairs of sleeping bodies
+	// keep the contacts they had when falling asleep. Bounds must be up to date, so
+	// this only writes to the pair's manifolds.
+	private void updateContacts(Pair pair, ContactArena arena) {
+		if (!isAwake(pair.obj1) && !isAwake(pair.obj2)) {
+			return;
+		} else if (!PhysicalObject.requiresCollisionCheck(pair.obj1, pair.obj2)
+				|| PhysicalObject.getCollisionDetails(pair.obj1, pair.obj2, pair.manifolds, arena) == 0) {
+			for (int i = 0; i < pair.manifolds.size(); i++) {
+				pair.manifolds.get(i).numPoints = 0;
+			}
+		}
+	}
+
+	// Give the manifolds of a pair that ended to the first arena with room.
+	private void recycle(Pair pair) {
+		for (ContactArena arena : arenas) {
+			if (!arena.isFull()) {
+				arena.recycle(pair.manifolds);
+				return;
+			}
+		}
+	}
+
+	// Check whether an amount of work is worth splitting over the solver pool.
+	private boolean isParallel(int work, int minWork) {
+		return solverPool != null && solverPool.getParallelism() > 1 && work >= minWork;
+	}
+
+	// Run an action over indices from 0 to a count on the solver pool, with a few
+	// ranges for each thread.
+	private void runParallel(IntConsumer action, int count) {
+		int grain = Math.max(1, count / (solverPool.getParallelism() * 4));
+		solverPool.invoke(new RangeTask(action, 0, count, grain));
+	}
+
+	// Group rigid bodies into islands through the pairs in contact, with a
+	// union-find over the bodies. Islands with an awake body are woken up whole,
+	// and the pairs they had asleep are collided again, so the solver warm starts
+	// from their last solved impulses rather than those of the check before.
+	private void buildIslands() {
+		for (int i = 0; i < bodies.size(); i++) {
+			RigidBody b = bodies.bodies[i];
+			b.islandParent = b;
+			b.islandIndex = -1;
+		}
+		for (Pair pair : candidatePairs) {
+			if (isTouching(pair) && pair.obj1 instanceof RigidBody && pair.obj2 instanceof RigidBody) {
+				RigidBody rootA = findIsland((RigidBody) pair.obj1), rootB = findIsland((RigidBody) pair.obj2);
+				rootA.islandParent = rootB;
+			}
+		}
+
+		for (int i = 0; i < numIslands; i++) {
+			islands.get(i).bodies.clear();
+			islands.get(i).pairs.clear();
+		}
+		numIslands = 0;
+		for (int i = 0; i < bodies.size(); i++) {
+			RigidBody b = bodies.bodies[i];
+			RigidBody root = findIsland(b);
+			if (root.islandIndex == -1) {
+				if (numIslands == islands.size()) {
+					islands.add(new Island());
+				}
+				root.islandIndex = numIslands++;
+				islands.get(root.islandIndex).awake = false;
+			}
+			Island island = islands.get(root.islandIndex);
+			island.bodies.add(b);
+			island.awake = island.awake || b.isAwake();
+		}
+		for (Pair pair : candidatePairs) {
+			if (isTouching(pair)) {
+				RigidBody b = (RigidBody) (pair.obj1 instanceof RigidBody ? pair.obj1 : pair.obj2);
+				islands.get(findIsland(b).islandIndex).pairs.add(pair);
+			}
+		}
+		wokenPairs.clear();
+		for (int i = 0; i < numIslands; i++) {
+			Island island = islands.get(i);
+			if (island.awake) {
+				for (Pair pair : island.pairs) {
+					if (!isAwake(pair.obj1) && !isAwake(pair.obj2)) {
+						wokenPairs.add(pair);
+					}
+				}
+				for (RigidBody b : island.bodies) {
+					if (!b.isAwake()) {
+						b.setAwake(true);
+					}
+				}
+			}
+		}
+		for (int i = 0; i < wokenPairs.size(); i++) {
+			updateContacts(wokenPairs.get(i), arenas.get(0));
+		}
+	}
+
+	// Find the root body of a body's island, halving the path on the way.
+	private static RigidBody findIsland(RigidBody b) {
+		while (b.islandParent != b) {
+			b.islandParent = b.islandParent.islandParent;
+			b = b.islandParent;
+		}
+		return b;
+	}
+
+	// Solve the contacts of an island, keeping the pairs hit. Only touches the
+	// island's own solver, pairs and manifolds.
+	private void solveIsland(Island island) {
+		ContactSolver solver = island.solver;
+		solver.clear();
+		island.hitPairs.clear();
+		for (Pair pair : island.pairs) {
+			boolean hit = false;
+			for (CollisionDetails details : pair.manifolds) {
+				if (details.numPoints > 0) {
+					hit = solver.add(details) || hit;
+				}
+			}
+			if (hit) {
+				island.hitPairs.add(pair);
+			}
+		}
+		if (graphColoring && solver.getNumContacts() >= COLORING_MIN_CONTACTS) {
+			boolean parallel = solverPool != null && solverPool.getParallelism() > 1;
+			solver.solveColored(velocityIterations, positionIterations, parallel ? solverPool : null);
+		} else {
+			solver.solve(velocityIterations, positionIterations);
+		}
+	}
+
+	// Apply the results of a solved island to its bodies, then put it to sleep if
+	// all of its bodies have been resting long enough.
+	private void finishIsland(Island island) {
+		island.solver.finish();
+		hitPairs.addAll(island.hitPairs);
+
+		float minSleepTime = Float.MAX_VALUE;
+		for (RigidBody b : island.bodies) {
+			minSleepTime = Math.min(minSleepTime,
+					b.updateSleepTime(targetSecondsPerFrame, sleepLinearVelocity, sleepRotationalVelocity));
+		}
+		if (sleepingEnabled && minSleepTime >= timeToSleep) {
+			for (RigidBody b : island.bodies) {
+				b.setAwake(false);
+			}
+		}
+	}
+
+	// Check whether any mesh of a pair is in contact.
+	private static boolean isTouching(Pair pair) {
+		for (int i = 0; i < pair.manifolds.size(); i++) {
+			if (pair.manifolds.get(i).numPoints > 0) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static boolean isAwake(PhysicalObject obj) {
+		return obj instanceof RigidBody && ((RigidBody) obj).isAwake();
+	}
+
+	// Remove the pairs of an object leaving the world, so its id can be reused,
+	// waking up the rigid bodies it was in contact with.
+	private void removePairs(PhysicalObject obj) {
+		pairs.removeIf((pair) -> {
+			if (pair.obj1 != obj && pair.obj2 != obj) {
+				return false;
+			}
+			PhysicalObject other = pair.obj1 == obj ? pair.obj2 : pair.obj1;
+			if (other instanceof RigidBody && isTouching(pair)) {
+				((RigidBody) other).setAwake(true);
+			}
+			recycle(pair);
+			return true;
+		});
+	}
+
+	/**
+	 * Sweep a continuous rigid body from its position before this frame's
+	 * integration to its current position, against the current position of other
+	 * objects. If the sweep hits an object, the body is moved to the time of
+	 * impact, slightly into the object so the collision gets resolved this frame,
+	 * and its bounds are refreshed in the broadphase. The broadphase must be up to
+	 * date with the other objects.
+	 *
+	 * @param b The continuous rigid body to sweep.
+	 */
+	private void applyContinuousCollision(RigidBody b) {
+		PVector start = b.getPreviousPosition();
+		if (start == null) {
+			return;
+		}
+		PVector motion = PVector.sub(b.getObject().getPosition(), start);
+		float distance = motion.mag();
+		float castRadius = b.getCastRadius();
+
+		// Moving less than the cast radius, the body can't skip over anything.
+		if (distance <= castRadius) {
+			return;
+		}
+		RayCastHit hit = shapeCast(start, castRadius, motion, distance,
+				(o) -> o != b && o.getObject() != b.getObject() && PhysicalObject.shouldCollide(b, o));
+		if (hit == null) {
+			return;
+		}
+
+		// Go past the time of impact along the motion, so the body sinks in the object
+		// by the penetration depth, going no further than twice the depth on grazing hits.
+		float approach = Math.max(-PVector.dot(motion, hit.normal) / distance, 0.5f);
+		float impactDistance = hit.distance + CONTINUOUS_PENETRATION / approach;
+		float scale = impactDistance / distance;
+		b.getObject().setPosition(start.x + motion.x * scale, start.y + motion.y * scale);
+		broadphase.update(b);
+	}
+
+	// Add a pair reported by the broadphase to the candidate pairs of this frame,
+	// if their collision filters let them collide. The pair from the last frame is
+	// kept if there is one.
+	private void addCandidatePair(PhysicalObject objA, PhysicalObject objB) {
+		if (!PhysicalObject.shouldCollide(objA, objB)) {
+			return;
+		}
+		Pair pair = pairs.get(objA.getId(), objB.getId());
+		if (pair == null) {
+			pair = new Pair(objA, objB);
+			pairs.put(objA.getId(), objB.getId(), pair);
+		}
+		pair.lastFrame = frame;
+		candidatePairs.add(pair);
+	}
+
 	/**
 	 * Perform a local update with a given game object, ignoring all physics but
 	 * physics for the given game object, and all collisions aside from collision
@@ -422,7 +914,7 @@ public class Director {
 	 *         frame.
 	 */
 	public List<PhysicalObject> localPhysicalUpdate(RigidBody obj) {
-		if (!bodies.containsKey(obj)) {
+		if (!bodies.contains(obj)) {
 			return null;
 		}
 
@@ -430,17 +922,27 @@ public class Director {
 		for (EngineEventListener l : obj.getObject().getListeners("update")) {
 			l.call(null);
 		}
-		obj.apply(bodies.get(obj).stream(), targetSecondsPerFrame);
-		ArrayDeque<Pair> queue = new ArrayDeque<>(objectMap.get(obj));
-		while (!queue.isEmpty()) {
-			Pair next = queue.pop();
-
-			if (PhysicalObject.requiresCollisionCheck(next.obj1, next.obj2)
-					&& !PhysicalObject.getCollisionDetails(next.obj1, next.obj2).isEmpty()) {
+		obj.apply(bodies.getForces(obj.slot), targetSecondsPerFrame);
+		if (obj.isContinuous()) {
+			applyContinuousCollision(obj);
+		}
+		List<PhysicalObject> others = broadphase.query(obj);
+		getStaticLayer().query(broadphase.getBounds(obj), others);
+		for (PhysicalObject other : others) {
+			if (!PhysicalObject.shouldCollide(obj, other)) {
+				continue;
+			}
+			obj.updateBounds();
+			other.updateBounds();
+			ContactArena arena = arenas.get(0);
+			int numManifolds = PhysicalObject.getCollisionDetails(obj, other, localManifolds, arena);
+			arena.recycle(localManifolds);
+			localManifolds.clear();
+			if (numManifolds > 0) {
 				for (EngineEventListener l : obj.getObject().getListeners("onHit")) {
-					l.call(obj == next.obj1 ? next.obj2.getObject() : next.obj1.getObject());
+					l.call(other.getObject());
 				}
-				interactions.add(obj == next.obj1 ? next.obj2 : next.obj1);
+				interactions.add(other);
 			}
 		}
 		return interactions;
@@ -456,7 +958,7 @@ public class Director {
 	 * @return A set of all the physical objects the object interacted with.
 	 */
 	public HashSet<PhysicalObject> startSimulationAndReturnInteractions(GameObject obj, RigidBody rb) {
-		if (world.contains(obj) || bodies.containsKey(rb)) {
+		if (isAttached(obj) || bodies.contains(rb)) {
 			return null;
 		}
 
@@ -465,15 +967,157 @@ public class Director {
 		}
 		attach(obj);
 		HashSet<PhysicalObject> interactions = new HashSet<>();
-		for (float time = 0; world.contains(obj) && time < SIMULATION_TIMEOUT_SECONDS; time += targetSecondsPerFrame) {
+		for (float time = 0; isAttached(obj) && time < SIMULATION_TIMEOUT_SECONDS; time += targetSecondsPerFrame) {
 			interactions.addAll(localPhysicalUpdate(rb));
 		}
-		if (world.contains(obj)) {
+		if (isAttached(obj)) {
 			disattach(obj);
 		}
 		return interactions;
 	}
 
+	/**
+	 * Get all physical objects whose bounds overlap a given area.
+	 *
+	 * @param area The area to query.
+	 *
+	 * @return The list of physical objects in the area.
+	 */
+	public List<PhysicalObject> queryArea(AABB area) {
+		List<PhysicalObject> ret = broadphase.query(area);
+		getStaticLayer().query(area, ret);
+		return ret;
+	}
+
+	/**
+	 * Cast a ray through the world and get the first physical object it hits.
+	 * Objects the ray starts inside of are not hit.
+	 *
+	 * @param origin      The origin of the ray.
+	 * @param direction   The direction of the ray.
+	 * @param maxDistance The maximum distance the ray travels.
+	 * @param filter      Predicate on the physical objects the ray can hit, or
+	 *                    null to hit every object.
+	 *
+	 * @return The closest hit, or null if the ray hits nothing.
+	 */
+	public RayCastHit rayCast(PVector origin, PVector direction, float maxDistance, Predicate<PhysicalObject> filter) {
+		List<RayCastHit> hits = cast(origin, direction, maxDistance, 0, filter, true);
+		return hits.isEmpty() ? null : hits.get(0);
+	}
+
+	/**
+	 * Cast a ray through the world and get every physical object it hits.
+	 *
+	 * @param origin      The origin of the ray.
+	 * @param direction   The direction of the ray.
+	 * @param maxDistance The maximum distance the ray travels.
+	 * @param filter      Predicate on the physical objects the ray can hit, or
+	 *                    null to hit every object.
+	 *
+	 * @return The hits of the ray, sorted by distance.
+	 */
+	public List<RayCastHit> rayCastAll(PVector origin, PVector direction, float maxDistance,
+			Predicate<PhysicalObject> filter) {
+		return cast(origin, direction, maxDistance, 0, filter, false);
+	}
+
+	/**
+	 * Sweep a circle through the world and get the first physical object it hits.
+	 * Objects the circle starts overlapping are not hit.
+	 *
+	 * @param origin      The starting center of the circle.
+	 * @param radius      The radius of the circle.
+	 * @param direction   The direction of the sweep.
+	 * @param maxDistance The maximum distance the circle travels.
+	 * @param filter      Predicate on the physical objects the circle can hit, or
+	 *                    null to hit every object.
+	 *
+	 * @return The closest hit, or null if the circle hits nothing. The hit point
+	 *         is the contact point on the hit object.
+	 */
+	public RayCastHit shapeCast(PVector origin, float radius, PVector direction, float maxDistance,
+			Predicate<PhysicalObject> filter) {
+		List<RayCastHit> hits = cast(origin, direction, maxDistance, radius, filter, true);
+		return hits.isEmpty() ? null : hits.get(0);
+	}
+
+	/**
+	 * Sweep a circle through the world and get every physical object it hits.
+	 *
+	 * @param origin      The starting center of the circle.
+	 * @param radius      The radius of the circle.
+	 * @param direction   The direction of the sweep.
+	 * @param maxDistance The maximum distance the circle travels.
+	 * @param filter      Predicate on the physical objects the circle can hit, or
+	 *                    null to hit every object.
+	 *
+	 * @return The hits of the circle, sorted by distance.
+	 */
+	public List<RayCastHit> shapeCastAll(PVector origin, float radius, PVector direction, float maxDistance,
+			Predicate<PhysicalObject> filter) {
+		return cast(origin, direction, maxDistance, radius, filter, false);
+	}
+
+	// Sweep a circle of a given radius through the world - a ray if the radius is
+	// 0 - and get its hits sorted by distance, or only the closest one.
+	private List<RayCastHit> cast(PVector origin, PVector direction, float maxDistance, float radius,
+			Predicate<PhysicalObject> filter, boolean closestOnly) {
+		List<RayCastHit> hits = new ArrayList<>();
+		float length = direction.mag();
+		if (length == 0 || maxDistance <= 0) {
+			return hits;
+		}
+		float dirX = direction.x / length, dirY = direction.y / length;
+
+		Broadphase.RayCastCallback callback = (obj, maxDist) -> {
+			if (filter != null && !filter.test(obj)) {
+				return maxDist;
+			}
+			RayCastHit hit = castAgainst(obj, origin.x, origin.y, dirX, dirY, maxDist, radius);
+			if (hit == null) {
+				return maxDist;
+			} else if (closestOnly) {
+				hits.clear();
+				hits.add(hit);
+				return hit.distance;
+			}
+			hits.add(hit);
+			return maxDist;
+		};
+
+		if (radius == 0) {
+			broadphase.rayCast(origin.x, origin.y, dirX, dirY, maxDistance, callback);
+			float staticMaxDistance = closestOnly && !hits.isEmpty() ? hits.get(0).distance : maxDistance;
+			getStaticLayer().rayCast(origin.x, origin.y, dirX, dirY, staticMaxDistance, callback);
+		} else {
+			// Objects in the area swept by the circle are candidates.
+			float endX = origin.x + dirX * maxDistance, endY = origin.y + dirY * maxDistance;
+			AABB sweep = new AABB(Math.min(origin.x, endX) - radius, Math.min(origin.y, endY) - radius,
+					Math.max(origin.x, endX) + radius, Math.max(origin.y, endY) + radius);
+			float maxDist = maxDistance;
+			for (PhysicalObject obj : queryArea(sweep)) {
+				maxDist = callback.call(obj, maxDist);
+			}
+		}
+		hits.sort((a, b) -> Float.compare(a.distance, b.distance));
+		return hits;
+	}
+
+	// Get the closest hit of a cast on any of the meshes of a physical object.
+	private static RayCastHit castAgainst(PhysicalObject obj, float originX, float originY, float dirX, float dirY,
+			float maxDistance, float radius) {
+		RayCastHit closest = null;
+		for (CollisionMesh mesh : obj.getMeshes()) {
+			RayCastHit hit = mesh.rayCast(originX, originY, dirX, dirY, maxDistance, radius, obj);
+			if (hit != null) {
+				closest = hit;
+				maxDistance = hit.distance;
+			}
+		}
+		return closest;
+	}
+
 	/**
 	 * Get the projection of the given vector with the camera to get a position on
 	 * the game window.
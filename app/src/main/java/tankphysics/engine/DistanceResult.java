@@ -0,0 +1,52 @@
+package tankphysics.engine;
+
+import processing.core.PVector;
+
+/**
+ * Class representing the result of a distance query between 2 meshes. The
+ * closest points are on the surface of each mesh, and are the same point if the
+ * meshes overlap.
+ */
+public class DistanceResult {
+	PVector pointA = new PVector();
+	PVector pointB = new PVector();
+	float distance;
+	int iterations;
+
+	/////////////////////////
+	// Getters and Setters //
+	/////////////////////////
+
+	public PVector getPointA() {
+		return pointA;
+	}
+
+	public PVector getPointB() {
+		return pointB;
+	}
+
+	public float getDistance() {
+		return distance;
+	}
+
+	public int getIterations() {
+		return iterations;
+	}
+
+	public boolean isOverlapping() {
+		return distance <= 0;
+	}
+
+	@Override
+	public String toString() {
+		return "Distance result: {\n\tpoint A: [" + pointA.x + "," + pointA.y + "],\n\tpoint B: [" + pointB.x + ","
+				+ pointB.y + "],\n\tdistance: " + distance + ",\n}";
+	}
+
+	//////////////////
+	// Constructors //
+	//////////////////
+
+	public DistanceResult() {
+	}
+}
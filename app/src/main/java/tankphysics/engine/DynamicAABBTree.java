@@ -0,0 +1,561 @@
+package tankphysics.engine;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.function.BiConsumer;
+
+/**
+ * Dynamic bounding volume tree broadphase. Each physical object is a leaf of
+ * the tree, holding a fattened copy of its bounds. A leaf is only reinserted
+ * when the object's bounds leave the fat bounds, and the tree is kept balanced
+ * with rotations on insertion and removal. Queries, pairs and ray casts all
+ * cost O(log n) per object. Based on Erin Catto's dynamic tree from Box2D.
+ *
+ * Nodes are stored in parallel arrays, indexed by node id. Leaves keep the same
+ * node id for as long as their object is in the tree.
+ *
+ * Objects that aren't rigid bodies are considered immovable, and pairs between
+ * 2 immovable objects are never reported.
+ */
+public class DynamicAABBTree implements Broadphase {
+	public static final float DEFAULT_FAT_MARGIN = 0.1f;
+	private static final int NULL_NODE = -1;
+	private static final int INITIAL_CAPACITY = 16;
+
+	private float fatMargin;
+
+	// Node pool - free nodes are chained through their parent index.
+	private int capacity = 0;
+	private float[] minX, minY, maxX, maxY;
+	private int[] parent, child1, child2, height;
+	private PhysicalObject[] objects;
+	private AABB[] tightBounds;
+	private boolean[] moving;
+	private int root = NULL_NODE;
+	private int freeList = NULL_NODE;
+
+	// Leaf handling - the leaf of each object by id, only valid where that leaf
+	// holds the object with the id. Objects without an id are kept in a map.
+	private int[] leaves = new int[INITIAL_CAPACITY];
+	private HashMap<PhysicalObject, Integer> leavesWithoutId = new HashMap<>();
+	private int[] movingLeaves = new int[INITIAL_CAPACITY];
+	private int numMovingLeaves = 0;
+	private int[] stack = new int[INITIAL_CAPACITY];
+
+	/////////////////////////
+	// Getters and Setters //
+	/////////////////////////
+
+	public boolean contains(PhysicalObject obj) {
+		return getLeaf(obj) != NULL_NODE;
+	}
+
+	public AABB getBounds(PhysicalObject obj) {
+		int leaf = getLeaf(obj);
+		return leaf == NULL_NODE ? null : tightBounds[leaf];
+	}
+
+	/**
+	 * Get the height of the tree - 0 for a single leaf.
+	 */
+	public int getHeight() {
+		return root == NULL_NODE ? 0 : height[root];
+	}
+
+	///////////////////////
+	// Node Pool Methods //
+	///////////////////////
+
+	private int allocateNode() {
+		if (freeList == NULL_NODE) {
+			grow(capacity == 0 ? INITIAL_CAPACITY : capacity * 2);
+		}
+		int node = freeList;
+		freeList = parent[node];
+		parent[node] = NULL_NODE;
+		child1[node] = NULL_NODE;
+		child2[node] = NULL_NODE;
+		height[node] = 0;
+		objects[node] = null;
+		moving[node] = false;
+		return node;
+	}
+
+	private void freeNode(int node) {
+		objects[node] = null;
+		tightBounds[node] = null;
+		height[node] = -1;
+		parent[node] = freeList;
+		freeList = node;
+	}
+
+	// Grow the node pool, chaining new nodes to the free list.
+	private void grow(int newCapacity) {
+		minX = copyOf(minX, newCapacity);
+		minY = copyOf(minY, newCapacity);
+		maxX = copyOf(maxX, newCapacity);
+		maxY = copyOf(maxY, newCapacity);
+		parent = copyOf(parent, newCapacity);
+		child1 = copyOf(child1, newCapacity);
+		child2 = copyOf(child2, newCapacity);
+		height = copyOf(height, newCapacity);
+		PhysicalObject[] newObjects = new PhysicalObject[newCapacity];
+		AABB[] newBounds = new AABB[newCapacity];
+		boolean[] newMoving = new boolean[newCapacity];
+		if (capacity > 0) {
+			System.arraycopy(objects, 0, newObjects, 0, capacity);
+			System.arraycopy(tightBounds, 0, newBounds, 0, capacity);
+			System.arraycopy(moving, 0, newMoving, 0, capacity);
+		}
+		objects = newObjects;
+		tightBounds = newBounds;
+		moving = newMoving;
+
+		for (int i = capacity; i < newCapacity; i++) {
+			parent[i] = i + 1 < newCapacity ? i + 1 : freeList;
+			height[i] = -1;
+		}
+		freeList = capacity;
+		capacity = newCapacity;
+	}
+
+	private static float[] copyOf(float[] array, int length) {
+		float[] ret = new float[length];
+		if (array != null) {
+			System.arraycopy(array, 0, ret, 0, array.length);
+		}
+		return ret;
+	}
+
+	private static int[] copyOf(int[] array, int length) {
+		int[] ret = new int[length];
+		if (array != null) {
+			System.arraycopy(array, 0, ret, 0, array.length);
+		}
+		return ret;
+	}
+
+	private boolean isLeaf(int node) {
+		return child1[node] == NULL_NODE;
+	}
+
+	// Set the bounds of a node to the union of the bounds of 2 nodes.
+	private void setUnion(int node, int a, int b) {
+		minX[node] = Math.min(minX[a], minX[b]);
+		minY[node] = Math.min(minY[a], minY[b]);
+		maxX[node] = Math.max(maxX[a], maxX[b]);
+		maxY[node] = Math.max(maxY[a], maxY[b]);
+	}
+
+	private float getPerimeter(int node) {
+		return 2 * (maxX[node] - minX[node] + maxY[node] - minY[node]);
+	}
+
+	private float getUnionPerimeter(int a, int b) {
+		return 2 * (Math.max(maxX[a], maxX[b]) - Math.min(minX[a], minX[b]) + Math.max(maxY[a], maxY[b])
+				- Math.min(minY[a], minY[b]));
+	}
+
+	////////////////////
+	// Proxy Handling //
+	////////////////////
+
+	// Get the leaf holding an object, or NULL_NODE if it isn't in the tree.
+	private int getLeaf(PhysicalObject obj) {
+		int id = obj.getId();
+		if (id < 0) {
+			Integer leaf = leavesWithoutId.get(obj);
+			return leaf == null ? NULL_NODE : leaf;
+		}
+		if (id < leaves.length) {
+			int leaf = leaves[id];
+			if (leaf >= 0 && leaf < capacity && objects[leaf] == obj) {
+				return leaf;
+			}
+		}
+		return NULL_NODE;
+	}
+
+	public void add(PhysicalObject obj) {
+		if (contains(obj)) {
+			return;
+		}
+		int leaf = allocateNode();
+		objects[leaf] = obj;
+		moving[leaf] = obj instanceof RigidBody;
+		tightBounds[leaf] = new AABB();
+		tightBounds[leaf].setFrom(obj);
+		setFatBounds(leaf);
+		insertLeaf(leaf);
+		int id = obj.getId();
+		if (id < 0) {
+			leavesWithoutId.put(obj, leaf);
+		} else {
+			if (id >= leaves.length) {
+				leaves = copyOf(leaves, Math.max(id + 1, leaves.length * 2));
+			}
+			leaves[id] = leaf;
+		}
+
+		if (moving[leaf]) {
+			if (numMovingLeaves == movingLeaves.length) {
+				movingLeaves = copyOf(movingLeaves, movingLeaves.length * 2);
+			}
+			movingLeaves[numMovingLeaves++] = leaf;
+		}
+	}
+
+	public void remove(PhysicalObject obj) {
+		int leaf = getLeaf(obj);
+		if (leaf == NULL_NODE) {
+			return;
+		}
+		if (obj.getId() < 0) {
+			leavesWithoutId.remove(obj);
+		}
+		if (moving[leaf]) {
+			for (int i = 0; i < numMovingLeaves; i++) {
+				if (movingLeaves[i] == leaf) {
+					movingLeaves[i] = movingLeaves[--numMovingLeaves];
+					break;
+				}
+			}
+		}
+		removeLeaf(leaf);
+		freeNode(leaf);
+	}
+
+	// Set the fat bounds of a leaf from its tight bounds. Immovable objects
+	// don't need any margin.
+	private void setFatBounds(int leaf) {
+		float margin = moving[leaf] ? fatMargin : 0;
+		AABB tight = tightBounds[leaf];
+		minX[leaf] = tight.minX - margin;
+		minY[leaf] = tight.minY - margin;
+		maxX[leaf] = tight.maxX + margin;
+		maxY[leaf] = tight.maxY + margin;
+	}
+
+	private void insertLeaf(int leaf) {
+		if (root == NULL_NODE) {
+			root = leaf;
+			parent[root] = NULL_NODE;
+			return;
+		}
+
+		// Find the best sibling for the leaf, using the perimeter as cost.
+		int index = root;
+		while (!isLeaf(index)) {
+			int c1 = child1[index];
+			int c2 = child2[index];
+			float combinedPerimeter = getUnionPerimeter(index, leaf);
+
+			// Cost of creating a new parent for this node and the leaf, and minimum cost
+			// of pushing the leaf further down the tree.
+			float cost = 2 * combinedPerimeter;
+			float inheritanceCost = 2 * (combinedPerimeter - getPerimeter(index));
+			float cost1 = getUnionPerimeter(c1, leaf) - (isLeaf(c1) ? 0 : getPerimeter(c1)) + inheritanceCost;
+			float cost2 = getUnionPerimeter(c2, leaf) - (isLeaf(c2) ? 0 : getPerimeter(c2)) + inheritanceCost;
+
+			if (cost < cost1 && cost < cost2) {
+				break;
+			}
+			index = cost1 < cost2 ? c1 : c2;
+		}
+		int sibling = index;
+
+		// Create a new parent for the sibling and the leaf.
+		int oldParent = parent[sibling];
+		int newParent = allocateNode();
+		parent[newParent] = oldParent;
+		setUnion(newParent, leaf, sibling);
+		height[newParent] = height[sibling] + 1;
+		child1[newParent] = sibling;
+		child2[newParent] = leaf;
+		parent[sibling] = newParent;
+		parent[leaf] = newParent;
+		if (oldParent == NULL_NODE) {
+			root = newParent;
+		} else if (child1[oldParent] == sibling) {
+			child1[oldParent] = newParent;
+		} else {
+			child2[oldParent] = newParent;
+		}
+
+		refitFrom(parent[leaf]);
+	}
+
+	private void removeLeaf(int leaf) {
+		if (leaf == root) {
+			root = NULL_NODE;
+			return;
+		}
+		int oldParent = parent[leaf];
+		int grandParent = parent[oldParent];
+		int sibling = child1[oldParent] == leaf ? child2[oldParent] : child1[oldParent];
+
+		// Replace the parent by the sibling.
+		parent[sibling] = grandParent;
+		if (grandParent == NULL_NODE) {
+			root = sibling;
+		} else if (child1[grandParent] == oldParent) {
+			child1[grandParent] = sibling;
+		} else {
+			child2[grandParent] = sibling;
+		}
+		freeNode(oldParent);
+		refitFrom(grandParent);
+	}
+
+	// Walk up the tree from a node, balancing and refitting bounds and heights.
+	private void refitFrom(int index) {
+		while (index != NULL_NODE) {
+			index = balance(index);
+			int c1 = child1[index];
+			int c2 = child2[index];
+			height[index] = 1 + Math.max(height[c1], height[c2]);
+			setUnion(index, c1, c2);
+			index = parent[index];
+		}
+	}
+
+	/**
+	 * Perform a left or right rotation if node A is imbalanced.
+	 *
+	 * @param a The node to balance.
+	 *
+	 * @return The new root of the balanced subtree.
+	 */
+	private int balance(int a) {
+		if (isLeaf(a) || height[a] < 2) {
+			return a;
+		}
+		int b = child1[a];
+		int c = child2[a];
+		int balance = height[c] - height[b];
+
+		// Rotate C up
+		if (balance > 1) {
+			int f = child1[c];
+			int g = child2[c];
+			child1[c] = a;
+			parent[c] = parent[a];
+			parent[a] = c;
+			replaceChild(parent[c], a, c);
+
+			if (height[f] > height[g]) {
+				child2[c] = f;
+				child2[a] = g;
+				parent[g] = a;
+				setUnion(a, b, g);
+				setUnion(c, a, f);
+				height[a] = 1 + Math.max(height[b], height[g]);
+				height[c] = 1 + Math.max(height[a], height[f]);
+			} else {
+				child2[c] = g;
+				child2[a] = f;
+				parent[f] = a;
+				setUnion(a, b, f);
+				setUnion(c, a, g);
+				height[a] = 1 + Math.max(height[b], height[f]);
+				height[c] = 1 + Math.max(height[a], height[g]);
+			}
+			return c;
+		}
+
+		// Rotate B up
+		if (balance < -1) {
+			int d = child1[b];
+			int e = child2[b];
+			child1[b] = a;
+			parent[b] = parent[a];
+			parent[a] = b;
+			replaceChild(parent[b], a, b);
+
+			if (height[d] > height[e]) {
+				child2[b] = d;
+				child1[a] = e;
+				parent[e] = a;
+				setUnion(a, c, e);
+				setUnion(b, a, d);
+				height[a] = 1 + Math.max(height[c], height[e]);
+				height[b] = 1 + Math.max(height[a], height[d]);
+			} else {
+				child2[b] = e;
+				child1[a] = d;
+				parent[d] = a;
+				setUnion(a, c, d);
+				setUnion(b, a, e);
+				height[a] = 1 + Math.max(height[c], height[d]);
+				height[b] = 1 + Math.max(height[a], height[e]);
+			}
+			return b;
+		}
+		return a;
+	}
+
+	// Replace a child of a given parent node, or the root if there is no parent.
+	private void replaceChild(int parentNode, int oldChild, int newChild) {
+		if (parentNode == NULL_NODE) {
+			root = newChild;
+		} else if (child1[parentNode] == oldChild) {
+			child1[parentNode] = newChild;
+		} else {
+			child2[parentNode] = newChild;
+		}
+	}
+
+	///////////////////////
+	// Broadphase Update //
+	///////////////////////
+
+	public void update() {
+		for (int i = 0; i < numMovingLeaves; i++) {
+			updateLeaf(movingLeaves[i]);
+		}
+	}
+
+	public void update(PhysicalObject obj) {
+		int leaf = getLeaf(obj);
+		if (leaf != NULL_NODE) {
+			updateLeaf(leaf);
+		}
+	}
+
+	// Refresh the tight bounds of a leaf, and reinsert it if they left the fat
+	// bounds.
+	private void updateLeaf(int leaf) {
+		AABB tight = tightBounds[leaf];
+		tight.setFrom(objects[leaf]);
+		if (tight.minX < minX[leaf] || tight.minY < minY[leaf] || tight.maxX > maxX[leaf]
+				|| tight.maxY > maxY[leaf]) {
+			removeLeaf(leaf);
+			setFatBounds(leaf);
+			insertLeaf(leaf);
+		}
+	}
+
+	///////////////////
+	// Query Methods //
+	///////////////////
+
+	private int push(int top, int node) {
+		if (top == stack.length) {
+			stack = copyOf(stack, stack.length * 2);
+		}
+		stack[top] = node;
+		return top + 1;
+	}
+
+	private boolean fatOverlaps(int node, AABB area) {
+		return minX[node] < area.maxX && area.minX < maxX[node] && minY[node] < area.maxY && area.minY < maxY[node];
+	}
+
+	/**
+	 * Report every pair of overlapping objects where at least one of them is
+	 * moving. Each moving leaf queries the tree with its tight bounds.
+	 *
+	 * @param callback The callback called for each overlapping pair.
+	 */
+	public void findPairs(BiConsumer<PhysicalObject, PhysicalObject> callback) {
+		for (int i = 0; i < numMovingLeaves; i++) {
+			int leaf = movingLeaves[i];
+			AABB bounds = tightBounds[leaf];
+			int top = push(0, root);
+			while (top > 0) {
+				int node = stack[--top];
+				if (node == NULL_NODE || !fatOverlaps(node, bounds)) {
+					continue;
+				}
+				if (isLeaf(node)) {
+					// Moving pairs are seen from both sides - report from the lowest node only.
+					if (node != leaf && (!moving[node] || leaf < node) && tightBounds[node].overlaps(bounds)) {
+						callback.accept(objects[leaf], objects[node]);
+					}
+				} else {
+					top = push(top, child1[node]);
+					top = push(top, child2[node]);
+				}
+			}
+		}
+	}
+
+	public List<PhysicalObject> query(PhysicalObject obj) {
+		int leaf = getLeaf(obj);
+		if (leaf == NULL_NODE) {
+			return new ArrayList<>();
+		}
+		updateLeaf(leaf);
+		List<PhysicalObject> ret = query(tightBounds[leaf]);
+		ret.remove(obj);
+		return ret;
+	}
+
+	public List<PhysicalObject> query(AABB area) {
+		List<PhysicalObject> ret = new ArrayList<>();
+		int top = push(0, root);
+		while (top > 0) {
+			int node = stack[--top];
+			if (node == NULL_NODE || !fatOverlaps(node, area)) {
+				continue;
+			}
+			if (isLeaf(node)) {
+				if (tightBounds[node].overlaps(area)) {
+					ret.add(objects[node]);
+				}
+			} else {
+				top = push(top, child1[node]);
+				top = push(top, child2[node]);
+			}
+		}
+		return ret;
+	}
+
+	/**
+	 * Cast a ray through the tree, only descending in nodes the ray crosses
+	 * before its current maximum distance.
+	 */
+	public void rayCast(float originX, float originY, float dirX, float dirY, float maxDistance,
+			RayCastCallback callback) {
+		int top = push(0, root);
+		while (top > 0) {
+			int node = stack[--top];
+			if (node == NULL_NODE || AABB.rayCast(minX[node], minY[node], maxX[node], maxY[node], originX, originY,
+					dirX, dirY, maxDistance) < 0) {
+				continue;
+			}
+			if (isLeaf(node)) {
+				if (tightBounds[node].rayCast(originX, originY, dirX, dirY, maxDistance) >= 0) {
+					maxDistance = callback.call(objects[node], maxDistance);
+					if (maxDistance <= 0) {
+						return;
+					}
+				}
+			} else {
+				top = push(top, child1[node]);
+				top = push(top, child2[node]);
+			}
+		}
+	}
+
+	//////////////////
+	// Constructors //
+	//////////////////
+
+	/**
+	 * Constructor for a dynamic AABB tree broadphase.
+	 *
+	 * @param fatMargin The margin added on each side of moving objects' bounds.
+	 *                  Larger margins mean less reinsertions, but more candidate
+	 *                  pairs.
+	 */
+	public DynamicAABBTree(float fatMargin) {
+		this.fatMargin = fatMargin;
+		grow(INITIAL_CAPACITY);
+	}
+
+	public DynamicAABBTree() {
+		this(DEFAULT_FAT_MARGIN);
+	}
+}
@@ -15,6 +15,12 @@ public class GameObject {
 	protected HashMap<GameObject, PVector> children;
 	protected float rotation = 0;
 
+	// Incremented on every change of position or rotation, for cached bounds.
+	protected int transformVersion = 0;
+
+	// Handle given by the director attaching the object.
+	long handle = HandleAllocator.NONE;
+
 	// Event listener list
 	protected HashMap<String, HashSet<EngineEventListener>> listeners = new HashMap<>(
 			Map.ofEntries(Map.entry("update", new HashSet<>()), Map.entry("onHit", new HashSet<>()),
@@ -29,6 +35,18 @@ public class GameObject {
 		return position;
 	}
 
+	public int getTransformVersion() {
+		return transformVersion;
+	}
+
+	/**
+	 * Get the handle the director gave the object when attaching it, which goes
+	 * stale once it is disattached.
+	 */
+	public long getHandle() {
+		return handle;
+	}
+
 	public PVector getSize() {
 		return size;
 	}
@@ -47,18 +65,48 @@ public class GameObject {
 
 	public void addChild(GameObject child, PVector offset) {
 		children.put(child, offset);
-		child.setPosition(PVector.add(position, Polygons.getRotatedVector(offset, rotation)));
+		placeChild(child, offset);
 	}
 
+	/**
+	 * Set the position of the game object. The position is copied to the game
+	 * object's own vector, which is changed in place.
+	 *
+	 * @param position The new position of the game object.
+	 */
 	public void setPosition(PVector position) {
-		this.position = position;
+		setPosition(position.x, position.y);
+	}
+
+	/**
+	 * Set the position of the game object, without allocating a vector.
+	 *
+	 * @param x The new x coordinate of the game object.
+	 * @param y The new y coordinate of the game object.
+	 */
+	public void setPosition(float x, float y) {
+		position.set(x, y);
+		transformVersion++;
+		placeChildren();
+	}
+
+	// Move the children following the game object to their offset from it.
+	private void placeChildren() {
+		if (children.isEmpty()) {
+			return;
+		}
 		for (GameObject child : children.keySet()) {
 			if (child.followsParent) {
-				child.setPosition(PVector.add(position, Polygons.getRotatedVector(children.get(child), rotation)));
+				placeChild(child, children.get(child));
 			}
 		}
 	}
 
+	private void placeChild(GameObject child, PVector offset) {
+		float cos = (float) Math.cos(rotation), sin = (float) Math.sin(rotation);
+		child.setPosition(position.x + cos * offset.x - sin * offset.y, position.y + sin * offset.x + cos * offset.y);
+	}
+
 	public void attach(Component component) {
 		components.add(component);
 		component.attach(this);
@@ -74,6 +122,7 @@ public class GameObject {
 
 	public void setRotation(float angle) {
 		rotation = angle;
+		transformVersion++;
 		for (Component c : components) {
 			if (c instanceof RigidBody) {
 				((RigidBody) c).setRotation(angle);
@@ -120,7 +169,8 @@ public class GameObject {
 			if (followsParent)
 				child.move(increment);
 		});
-		position = PVector.add(position, increment);
+		position.add(increment);
+		transformVersion++;
 	}
 
 	////////////////////////////
@@ -190,7 +240,7 @@ public class GameObject {
 	 * @param components    The list of components to attach to the game object.
 	 */
 	public GameObject(PVector size, PVector position, boolean followsParent, Component... components) {
-		this.position = position;
+		this.position = position.copy();
 		this.size = size;
 		this.followsParent = followsParent;
 		this.components = new HashSet<>(Arrays.asList(components));
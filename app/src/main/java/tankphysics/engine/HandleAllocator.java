@@ -0,0 +1,138 @@
+package tankphysics.engine;
+
+import java.util.Arrays;
+
+/**
+ * Generational handle allocator, mapping handles to values in a dense array.
+ * A handle packs the index of its value's slot with the generation of the slot,
+ * which goes up every time the slot is freed. Freed slots are reused by new
+ * values, and handles to the values they held before become stale, which is
+ * detected by comparing generations.
+ *
+ * @param <T> The type of the values handles are given to.
+ */
+public class HandleAllocator<T> {
+	/**
+	 * A handle that is never valid, for values without one.
+	 */
+	public static final long NONE = -1;
+
+	private Object[] values;
+	private int[] generations;
+	private int[] freeIndices;
+	private int numFreeIndices = 0;
+	private int capacity = 0;
+
+	/////////////////////////
+	// Getters and Setters //
+	/////////////////////////
+
+	/**
+	 * Get the value a handle was given to.
+	 *
+	 * @param handle The handle of the value.
+	 *
+	 * @return The value, or null if the handle is stale or invalid.
+	 */
+	@SuppressWarnings("unchecked")
+	public T get(long handle) {
+		return isValid(handle) ? (T) values[getIndex(handle)] : null;
+	}
+
+	/**
+	 * Get the value in a slot, for iterating over all values.
+	 *
+	 * @param index The index of the slot, under the capacity.
+	 *
+	 * @return The value in the slot, or null if the slot is free.
+	 */
+	@SuppressWarnings("unchecked")
+	public T getAt(int index) {
+		return (T) values[index];
+	}
+
+	/**
+	 * Get the number of slots handed out so far, free or not. Every handle index is
+	 * under the capacity, so arrays of that size can be indexed by handles.
+	 */
+	public int getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * Check whether a handle is still held by the value it was given to.
+	 */
+	public boolean isValid(long handle) {
+		int index = getIndex(handle);
+		return index >= 0 && index < capacity && generations[index] == getGeneration(handle);
+	}
+
+	public static int getIndex(long handle) {
+		return (int) handle;
+	}
+
+	public static int getGeneration(long handle) {
+		return (int) (handle >>> 32);
+	}
+
+	//////////////////////////
+	// Allocator Operations //
+	//////////////////////////
+
+	/**
+	 * Give a handle to a value, in a freed slot if there is one.
+	 *
+	 * @param value The value to give a handle to.
+	 *
+	 * @return The value's handle.
+	 */
+	public long allocate(T value) {
+		int index;
+		if (numFreeIndices > 0) {
+			index = freeIndices[--numFreeIndices];
+		} else {
+			if (capacity == values.length) {
+				values = Arrays.copyOf(values, capacity * 2);
+				generations = Arrays.copyOf(generations, capacity * 2);
+				freeIndices = Arrays.copyOf(freeIndices, capacity * 2);
+			}
+			index = capacity++;
+		}
+		values[index] = value;
+		return (long) generations[index] << 32 | index;
+	}
+
+	/**
+	 * Free the slot of a handle, making the handle and its copies stale.
+	 *
+	 * @param handle The handle to free.
+	 *
+	 * @return The value the handle was given to, or null if it was already stale.
+	 */
+	public T free(long handle) {
+		T value = get(handle);
+		if (value != null) {
+			int index = getIndex(handle);
+			values[index] = null;
+			generations[index]++;
+			freeIndices[numFreeIndices++] = index;
+		}
+		return value;
+	}
+
+	/////////////////
+	// Constructor //
+	/////////////////
+
+	/**
+	 * Constructor for a handle allocator with no handles.
+	 *
+	 * @param capacity The number of slots to make room for.
+	 */
+	public HandleAllocator(int capacity) {
+		capacity = Math.max(capacity, 1);
+		values = new Object[capacity];
+		generations = new int[capacity];
+		freeIndices = new int[capacity];
+	}
+}
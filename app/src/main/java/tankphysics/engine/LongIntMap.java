@@ -0,0 +1,137 @@
+package tankphysics.engine;
+
+/**
+ * Open addressing hash map from long keys to non-negative int values, without
+ * boxing. Collisions are resolved by linear probing, and removed entries are
+ * filled by shifting the following entries back. Empty slots are marked in the
+ * values rather than the keys, so every long can be a key.
+ */
+class LongIntMap {
+	private static final int MIN_CAPACITY = 16;
+
+	private long[] keys;
+	// Values plus 1, 0 for empty slots.
+	private int[] values;
+	private int mask;
+	private int size = 0;
+
+	/////////////////////////
+	// Getters and Setters //
+	/////////////////////////
+
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Get the value of a key.
+	 *
+	 * @param key The key to look up.
+	 *
+	 * @return The key's value, or -1 if it has none.
+	 */
+	public int get(long key) {
+		for (int i = indexOf(key); values[i] != 0; i = (i + 1) & mask) {
+			if (keys[i] == key) {
+				return values[i] - 1;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Set the value of a key, replacing any value it had.
+	 *
+	 * @param key   The key to set the value of.
+	 * @param value The value, not negative.
+	 */
+	public void put(long key, int value) {
+		if ((size + 1) * 2 > keys.length) {
+			resize(keys.length * 2);
+		}
+		int i = indexOf(key);
+		while (values[i] != 0 && keys[i] != key) {
+			i = (i + 1) & mask;
+		}
+		if (values[i] == 0) {
+			keys[i] = key;
+			size++;
+		}
+		values[i] = value + 1;
+	}
+
+	/**
+	 * Remove a key.
+	 *
+	 * @param key The key to remove.
+	 *
+	 * @return The value the key had, or -1 if it had none.
+	 */
+	public int remove(long key) {
+		int hole = indexOf(key);
+		while (values[hole] != 0 && keys[hole] != key) {
+			hole = (hole + 1) & mask;
+		}
+		if (values[hole] == 0) {
+			return -1;
+		}
+		int value = values[hole] - 1;
+		size--;
+		// Shift back the entries probed past the hole, unless they want an index
+		// cyclically after it.
+		for (int i = (hole + 1) & mask; values[i] != 0; i = (i + 1) & mask) {
+			int home = indexOf(keys[i]);
+			if (((i - home) & mask) >= ((i - hole) & mask)) {
+				keys[hole] = keys[i];
+				values[hole] = values[i];
+				hole = i;
+			}
+		}
+		values[hole] = 0;
+		return value;
+	}
+
+	private void resize(int capacity) {
+		long[] oldKeys = keys;
+		int[] oldValues = values;
+		allocate(capacity);
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldValues[i] != 0) {
+				int j = indexOf(oldKeys[i]);
+				while (values[j] != 0) {
+					j = (j + 1) & mask;
+				}
+				keys[j] = oldKeys[i];
+				values[j] = oldValues[i];
+			}
+		}
+	}
+
+	private void allocate(int capacity) {
+		keys = new long[capacity];
+		values = new int[capacity];
+		mask = capacity - 1;
+	}
+
+	// Get the index a key is hashed to, spreading its bits with the finalizer of
+	// MurmurHash3.
+	private int indexOf(long key) {
+		key ^= key >>> 33;
+		key *= 0xff51afd7ed558ccdL;
+		key ^= key >>> 33;
+		key *= 0xc4ceb9fe1a85ec53L;
+		key ^= key >>> 33;
+		return (int) key & mask;
+	}
+
+	/////////////////
+	// Constructor //
+	/////////////////
+
+	/**
+	 * Constructor for an empty map.
+	 */
+	public LongIntMap() {
+		allocate(MIN_CAPACITY);
+	}
+}
@@ -0,0 +1,82 @@
+package tankphysics.engine;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * Table of values for physical objects, in an array indexed by the objects' ids,
+ * so objects attached to a director are looked up without hashing. Objects
+ * without an id fall back to a hash map. An object's id must not change while
+ * it is in the table.
+ *
+ * @param <V> The type of the values stored for each object.
+ */
+class ObjectTable<V> {
+	private PhysicalObject[] keys = new PhysicalObject[16];
+	private Object[] values = new Object[16];
+	private HashMap<PhysicalObject, V> objectsWithoutId = new HashMap<>();
+
+	/////////////////////////
+	// Getters and Setters //
+	/////////////////////////
+
+	/**
+	 * Get the value stored for an object.
+	 *
+	 * @param obj The object to get the value of.
+	 *
+	 * @return The object's value, or null if it has none.
+	 */
+	@SuppressWarnings("unchecked")
+	public V get(PhysicalObject obj) {
+		int id = obj.getId();
+		if (id < 0) {
+			return objectsWithoutId.get(obj);
+		}
+		return id < keys.length && keys[id] == obj ? (V) values[id] : null;
+	}
+
+	public boolean containsKey(PhysicalObject obj) {
+		return get(obj) != null;
+	}
+
+	/**
+	 * Store the value of an object, replacing any value it had.
+	 *
+	 * @param obj   The object to store a value for.
+	 * @param value The value to store, not null.
+	 */
+	public void put(PhysicalObject obj, V value) {
+		int id = obj.getId();
+		if (id < 0) {
+			objectsWithoutId.put(obj, value);
+			return;
+		}
+		if (id >= keys.length) {
+			int length = Math.max(id + 1, keys.length * 2);
+			keys = Arrays.copyOf(keys, length);
+			values = Arrays.copyOf(values, length);
+		}
+		keys[id] = obj;
+		values[id] = value;
+	}
+
+	/**
+	 * Remove the value of an object.
+	 *
+	 * @param obj The object to remove the value of.
+	 *
+	 * @return The value the object had, or null if it had none.
+	 */
+	public V remove(PhysicalObject obj) {
+		V value = get(obj);
+		int id = obj.getId();
+		if (id < 0) {
+			objectsWithoutId.remove(obj);
+		} else if (value != null) {
+			keys[id] = null;
+			values[id] = null;
+		}
+		return value;
+	}
+}
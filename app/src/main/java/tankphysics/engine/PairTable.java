@@ -0,0 +1,173 @@
+package tankphysics.engine;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Open addressing hash table holding a value for each unordered pair of object
+ * ids. The 2 ids are packed in a long key, smallest first, so looking up a pair
+ * allocates nothing. Collisions are resolved by linear probing, and removed
+ * entries are filled by shifting the following entries back, so there are no
+ * tombstones.
+ *
+ * @param <V> The type of the values stored for each pair.
+ */
+class PairTable<V> {
+	private static final int MIN_CAPACITY = 16;
+	private static final long EMPTY = -1;
+
+	private long[] keys;
+	private Object[] values;
+	private int mask;
+	private int size = 0;
+
+	/////////////////////////
+	// Getters and Setters //
+	/////////////////////////
+
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Get the value stored for a pair of ids, in either order.
+	 *
+	 * @param idA The id of the 1st object of the pair.
+	 * @param idB The id of the 2nd object of the pair.
+	 *
+	 * @return The value of the pair, or null if there is none.
+	 */
+	@SuppressWarnings("unchecked")
+	public V get(int idA, int idB) {
+		long key = makeKey(idA, idB);
+		for (int i = indexOf(key); keys[i] != EMPTY; i = (i + 1) & mask) {
+			if (keys[i] == key) {
+				return (V) values[i];
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Store the value of a pair of ids, replacing any value it had.
+	 *
+	 * @param idA   The id of the 1st object of the pair.
+	 * @param idB   The id of the 2nd object of the pair.
+	 * @param value The value to store.
+	 */
+	public void put(int idA, int idB, V value) {
+		if ((size + 1) * 2 > keys.length) {
+			resize(keys.length * 2);
+		}
+		long key = makeKey(idA, idB);
+		int i = indexOf(key);
+		while (keys[i] != EMPTY && keys[i] != key) {
+			i = (i + 1) & mask;
+		}
+		if (keys[i] == EMPTY) {
+			keys[i] = key;
+			size++;
+		}
+		values[i] = value;
+	}
+
+	///////////////////////////
+	// Pair Table Operations //
+	///////////////////////////
+
+	/**
+	 * Remove the pairs whose values match a condition.
+	 *
+	 * @param filter The condition of the values to remove.
+	 */
+	@SuppressWarnings("unchecked")
+	public void removeIf(Predicate<V> filter) {
+		for (int i = 0; i < keys.length; i++) {
+			// Check the slot again after a removal, an entry may have moved into it.
+			while (keys[i] != EMPTY && filter.test((V) values[i])) {
+				removeAt(i);
+			}
+		}
+	}
+
+	/**
+	 * Run an action on the values of all pairs, in no particular order.
+	 *
+	 * @param action The action to run.
+	 */
+	@SuppressWarnings("unchecked")
+	public void forEach(Consumer<V> action) {
+		for (int i = 0; i < keys.length; i++) {
+			if (keys[i] != EMPTY) {
+				action.accept((V) values[i]);
+			}
+		}
+	}
+
+	// Remove the entry at an index, shifting back the entries probed past it.
+	private void removeAt(int hole) {
+		size--;
+		for (int i = (hole + 1) & mask; keys[i] != EMPTY; i = (i + 1) & mask) {
+			// Entries wanting an index cyclically after the hole must stay.
+			int home = indexOf(keys[i]);
+			if (((i - home) & mask) >= ((i - hole) & mask)) {
+				keys[hole] = keys[i];
+				values[hole] = values[i];
+				hole = i;
+			}
+		}
+		keys[hole] = EMPTY;
+		values[hole] = null;
+	}
+
+	private void resize(int capacity) {
+		long[] oldKeys = keys;
+		Object[] oldValues = values;
+		allocate(capacity);
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldKeys[i] != EMPTY) {
+				int j = indexOf(oldKeys[i]);
+				while (keys[j] != EMPTY) {
+					j = (j + 1) & mask;
+				}
+				keys[j] = oldKeys[i];
+				values[j] = oldValues[i];
+			}
+		}
+	}
+
+	private void allocate(int capacity) {
+		keys = new long[capacity];
+		values = new Object[capacity];
+		mask = capacity - 1;
+		Arrays.fill(keys, EMPTY);
+	}
+
+	// Pack 2 non-negative ids into a key, the same in either order.
+	private static long makeKey(int idA, int idB) {
+		return idA < idB ? (long) idA << 32 | idB : (long) idB << 32 | idA;
+	}
+
+	// Get the index a key is hashed to, spreading its bits with the finalizer of
+	// MurmurHash3.
+	private int indexOf(long key) {
+		key ^= key >>> 33;
+		key *= 0xff51afd7ed558ccdL;
+		key ^= key >>> 33;
+		key *= 0xc4ceb9fe1a85ec53L;
+		key ^= key >>> 33;
+		return (int) key & mask;
+	}
+
+	/////////////////
+	// Constructor //
+	/////////////////
+
+	/**
+	 * Constructor for an empty pair table.
+	 */
+	public PairTable() {
+		allocate(MIN_CAPACITY);
+	}
+}
@@ -1,6 +1,7 @@
 package tankphysics.engine;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 import processing.core.PVector;
@@ -8,13 +9,13 @@ import processing.core.PVector;
 /**
  * Interface for physical objects, used in collision calculations.
  */
-public interface PhysicalObject {
+public interface PhysicalObject extends Component {
 	public static final float CORRECTION_THRESHOLD = 0.01f;
 	public static final float CORRECTION_PERCENTAGE = 0.4f;
 	public static final float SAME_EDGE_THRESHOLD = 0.01f;
-	public static final float ROTATIONAL_VELOCITY_THRESHOLD = 0.0f;
 
-	public static final float INERTIA_THRESHOLD = 0.0f;
+	public static final int DEFAULT_COLLISION_CATEGORY = 0x0001;
+	public static final int ALL_COLLISION_CATEGORIES = 0xFFFFFFFF;
 
 	///////////////////////
 	// Interface Methods //
@@ -22,14 +23,49 @@ public interface PhysicalObject {
 
 	public GameObject getObject();
 
+	/**
+	 * Get the dense id of the object in the director's world, used to key its
+	 * collision pairs - the index of its handle, or -1 if it has none.
+	 */
+	public default int getId() {
+		return HandleAllocator.getIndex(getHandle());
+	}
+
 	public float getInverseMass();
 
 	public PVector getVelocity();
 
+	/**
+	 * Copy the velocity of the object to a vector, without allocating one.
+	 *
+	 * @param out The vector to write the velocity to.
+	 */
+	public void getVelocity(PVector out);
+
 	public PVector getPosition();
 
 	public PVector getSize();
 
+	/**
+	 * Get the cached world bounds of the object, tight to its collision meshes.
+	 * The bounds are only recalculated when the object moves, rotates or changes
+	 * meshes. The returned box must not be modified.
+	 */
+	public AABB getBounds();
+
+	/**
+	 * Recalculate the cached world bounds of the object and its meshes, if it
+	 * moved, rotated or changed meshes since they were last calculated.
+	 */
+	public void updateBounds();
+
+	/**
+	 * Get the world bounds as of the last update, without checking whether the
+	 * object moved since. Objects are updated before contacts are computed, so
+	 * the narrowphase only reads them. The returned box must not be modified.
+	 */
+	public AABB getCachedBounds();
+
 	public float getOrientation();
 
 	public void setOrientation(float radians);
@@ -40,16 +76,31 @@ public interface PhysicalObject {
 
 	public void setPosition(PVector position);
 
+	public void setPosition(float x, float y);
+
 	public void setVelocity(PVector velocity);
 
+	public void setVelocity(float x, float y);
+
 	public PVector getCOM();
 
 	public float getInverseInertia();
 
-	public boolean addForCollisions();
+	public int getCollisionCategory();
+
+	public int getCollisionMask();
+
+	public int getCollisionGroup();
 
 	public Iterable<CollisionMesh> getMeshes();
 
+	/**
+	 * Add the object's meshes whose bounds overlap an area to a list, in the order
+	 * of getMeshes. The mid-phase of collision checks, between the bounds of whole
+	 * objects and the meshes' narrowphase.
+	 */
+	public void queryMeshes(AABB area, List<CollisionMesh> out);
+
 	public void applyImpulse(PVector impulse, PVector affectPt, PhysicalObject ref, boolean checkRotationalVelocity);
 
 	////////////////////
@@ -57,169 +108,139 @@ public interface PhysicalObject {
 	////////////////////
 
 	/**
-	 * Get collision details between 2 objects. Returns null if the 2 objects are
-	 * not colliding.
+	 * Get the contact manifolds between 2 objects. Only meshes overlapping the
+	 * other object's bounds are paired, and only pairs of meshes with overlapping
+	 * bounds are checked. The list keeps one manifold for each pair of meshes
+	 * checked so far, which is reused along with its separating axis cache.
+	 * Manifolds of meshes that are not colliding have no points.
 	 *
 	 * @param objA The 1st object to check.
 	 * @param objB The object to check against.
+	 * @param out  The list of manifolds to write to.
 	 *
-	 * @return The collision details between both objects, or null if those are not
+	 * @return The number of colliding mesh pairs - 0 if the objects are not
 	 *         colliding.
 	 */
-	public static List<CollisionDetails> getCollisionDetails(PhysicalObject objA, PhysicalObject objB) {
-		List<CollisionDetails> ret = new ArrayList<>();
-		for (CollisionMesh vA : objA.getMeshes()) {
-			for (CollisionMesh vB : objB.getMeshes()) {
-				CollisionDetails currentAtoB = CollisionMesh.queryFaceDist(vA, vB, objA, objB);
-				if (currentAtoB == null) {
-					continue;
-				}
+	public static int getCollisionDetails(PhysicalObject objA, PhysicalObject objB, List<CollisionDetails> out) {
+		objA.updateBounds();
+		objB.updateBounds();
+		return getCollisionDetails(objA, objB, out, new ContactArena());
+	}
 
-				// Call other side if no mesh is a particle.
-				if (vA.getMeshType() != CollisionMesh.MeshType.PARTICLE
-						&& vB.getMeshType() != CollisionMesh.MeshType.PARTICLE) {
-					CollisionDetails currentBtoA = CollisionMesh.queryFaceDist(vB, vA, objB, objA);
-					if (currentBtoA == null) {
-						continue;
-					} else if (currentBtoA.penetration > currentAtoB.penetration + SAME_EDGE_THRESHOLD) {
-						ret.add(currentBtoA);
-					} else if (Math.abs(currentBtoA.penetration - currentAtoB.penetration) < SAME_EDGE_THRESHOLD) {
-						currentAtoB.affectPoints.addAll(currentBtoA.affectPoints);
+	/**
+	 * Get the contact manifolds between 2 objects, like
+	 * {@link #getCollisionDetails(PhysicalObject, PhysicalObject, List)}, taking
+	 * the memory needed from an arena instead of allocating it. The objects'
+	 * bounds must be up to date, as only the cached ones are read.
+	 *
+	 * @param objA  The 1st object to check.
+	 * @param objB  The object to check against.
+	 * @param out   The list of manifolds to write to.
+	 * @param arena The arena to take scratch lists and new manifolds from.
+	 *
+	 * @return The number of colliding mesh pairs - 0 if the objects are not
+	 *         colliding.
+	 */
+	static int getCollisionDetails(PhysicalObject objA, PhysicalObject objB, List<CollisionDetails> out,
+			ContactArena arena) {
+		List<CollisionMesh> meshesA = arena.meshesA, meshesB = arena.meshesB;
+		meshesA.clear();
+		meshesB.clear();
+		queryMeshes(objA, objB.getCachedBounds(), meshesA, arena);
+		queryMeshes(objB, objA.getCachedBounds(), meshesB, arena);
+
+		// Manifolds of the pairs checked are moved to the front of the list.
+		int numManifolds = 0;
+		int numChecked = 0;
+		for (int i = 0; i < meshesA.size(); i++) {
+			CollisionMesh vA = meshesA.get(i);
+			for (int j = 0; j < meshesB.size(); j++) {
+				CollisionMesh vB = meshesB.get(j);
+				if (vA.getCachedBounds().overlaps(vB.getCachedBounds())) {
+					CollisionDetails details = takeManifold(out, numChecked++, vA, vB, arena);
+					if (CollisionMesh.collide(vA, vB, objA, objB, details)) {
+						numManifolds++;
 					}
 				}
-				ret.add(currentAtoB);
 			}
 		}
-		return ret;
-	}
-
-	public static boolean requiresRotationalVelocity(CollisionDetails details) {
-		PhysicalObject objA = details.objA;
-		PhysicalObject objB = details.objB;
-
-		float totalInertiaA = 0;
-		float totalInertiaB = 0;
-		for (PVector affectPoint : details.affectPoints) {
-
-			// Get radius of the affected point on A and B
-			PVector radiusA = PVector.sub(affectPoint, objA.getCOM()).sub(objA.getPosition());
-			PVector radiusB = PVector.sub(affectPoint, objB.getCOM()).sub(objB.getPosition());
-
-			// Check if objects are moving into each other from the normal's point of view.
-			float radACrossNormal = (float) Math.pow(radiusA.cross(details.normal).z, 2);
-			float radBCrossNormal = (float) Math.pow(radiusB.cross(details.normal).z, 2);
-
-			totalInertiaA += radACrossNormal * objA.getInverseInertia();
-			totalInertiaB += radBCrossNormal * objB.getInverseInertia();
+		for (int i = numChecked; i < out.size(); i++) {
+			out.get(i).clearPoints();
 		}
-		return Math.abs(totalInertiaA) > INERTIA_THRESHOLD || Math.abs(totalInertiaB) > INERTIA_THRESHOLD
-				|| Math.abs(objA.getRotationalVelocity()) > ROTATIONAL_VELOCITY_THRESHOLD
-				|| Math.abs(objB.getRotationalVelocity()) > ROTATIONAL_VELOCITY_THRESHOLD;
+		return numManifolds;
 	}
 
-	/**
-	 * Apply impulse resolution from collision details given.
-	 *
-	 * @param details The collision details containing the objects to resolve
-	 *                impulse from.
-	 */
-	public static boolean applyImpulseResolution(CollisionDetails details) {
-		PhysicalObject objA = details.objA;
-		PhysicalObject objB = details.objB;
-
-		boolean checkRotationalVelocity = requiresRotationalVelocity(details);
-
-		for (PVector affectPoint : details.affectPoints) {
-
-			// Get radius of the affected point on A and B
-			PVector radiusA = PVector.sub(affectPoint, objA.getCOM()).sub(objA.getPosition());
-			PVector radiusB = PVector.sub(affectPoint, objB.getCOM()).sub(objB.getPosition());
-
-			// Check if objects are moving into each other from the normal's point of view.
-			PVector relativeVelocity = PVector.sub(objB.getVelocity(), objA.getVelocity());
-
-			if (checkRotationalVelocity) {
-				relativeVelocity = relativeVelocity
-						.sub(new PVector(-radiusA.y, radiusA.x).mult(objA.getRotationalVelocity()))
-						.add(new PVector(-radiusB.y, radiusB.x).mult(objB.getRotationalVelocity()));
-			}
-			float velocityProjectionOnNormal = PVector.dot(relativeVelocity, details.normal);
-			if (velocityProjectionOnNormal > 0) {
-				return false;
-			}
-
-			// Calculate impulse resolution
-			float totalBounce = details.meshA.getBounciness() * details.meshB.getBounciness();
-			float radACrossNormal = (float) Math.pow(radiusA.cross(details.normal).z, 2);
-			float radBCrossNormal = (float) Math.pow(radiusB.cross(details.normal).z, 2);
-			float factorDiv = objA.getInverseMass() + objB.getInverseMass();
-
-			if (checkRotationalVelocity) {
-				factorDiv += (radACrossNormal * objA.getInverseInertia() + radBCrossNormal * objB.getInverseInertia());
-			}
-
-			factorDiv *= details.affectPoints.size();
-			float impulseFactor = -(1 + totalBounce) * velocityProjectionOnNormal / factorDiv;
-			PVector impulse = PVector.mult(details.normal, impulseFactor);
-
-			objA.applyImpulse(PVector.mult(impulse, -1).copy(), radiusA, objB, checkRotationalVelocity);
-			objB.applyImpulse(impulse.copy(), radiusB, objA, checkRotationalVelocity);
-
-			// Calculate tangent for friction
-			PVector tan = PVector
-					.sub(relativeVelocity, PVector.mult(details.normal, PVector.dot(relativeVelocity, details.normal)))
-					.normalize();
-			float velocityProjectionOnTan = PVector.dot(relativeVelocity, tan);
-
-			// Factor on friction - breaks object speed on contact by roughness of material.
-			float staticFactor = details.meshA.getStaticFriction() * details.meshB.getStaticFriction();
-			float dynamicFactor = details.meshA.getDynamicFriction() * details.meshB.getDynamicFriction();
-			float frictionFactor = -velocityProjectionOnTan / factorDiv;
-
-			PVector frictionImpulse = PVector.mult(tan, frictionFactor);
-			if (Math.abs(frictionFactor) > staticFactor * impulseFactor) {
-				frictionImpulse = PVector.mult(tan, -impulseFactor * dynamicFactor);
+	// Query the meshes of an object overlapping an area with their cached bounds,
+	// and the arena's scratch memory for rigid bodies' mesh trees.
+	private static void queryMeshes(PhysicalObject obj, AABB area, List<CollisionMesh> out, ContactArena arena) {
+		if (obj instanceof RigidBody) {
+			((RigidBody) obj).queryMeshes(area, out, arena);
+		} else if (obj instanceof CollisionMesh) {
+			if (obj.getCachedBounds().overlaps(area)) {
+				out.add((CollisionMesh) obj);
 			}
-			objA.applyImpulse(PVector.mult(frictionImpulse, -1).copy(), radiusA, objB, checkRotationalVelocity);
-			objB.applyImpulse(frictionImpulse.copy(), radiusB, objA, checkRotationalVelocity);
+		} else {
+			obj.queryMeshes(area, out);
 		}
-
-		return -details.penetration > CORRECTION_THRESHOLD;
 	}
 
-	public static void applySinkingCorrection(CollisionDetails details) {
-		PhysicalObject objA = details.objA;
-		PhysicalObject objB = details.objB;
-
-		// Correct positional sinking between both objects, with jitter threshold
-		float inverseTotalMass = 1 / (objA.getInverseMass() + objB.getInverseMass());
-		if (-details.penetration > CORRECTION_THRESHOLD) {
-			objA.setPosition(PVector.add(objA.getPosition(), PVector.mult(details.normal,
-					details.penetration * CORRECTION_PERCENTAGE * objA.getInverseMass() * inverseTotalMass)));
-			objB.setPosition(PVector.sub(objB.getPosition(), PVector.mult(details.normal,
-					details.penetration * CORRECTION_PERCENTAGE * objB.getInverseMass() * inverseTotalMass)));
+	// Move the manifold kept for a pair of meshes to an index of the list, looking
+	// after that index only. Pairs with none get a new manifold from the arena.
+	private static CollisionDetails takeManifold(List<CollisionDetails> manifolds, int index, CollisionMesh meshA,
+			CollisionMesh meshB, ContactArena arena) {
+		for (int i = index; i < manifolds.size(); i++) {
+			CollisionDetails details = manifolds.get(i);
+			if (details.pairMeshA == meshA && details.pairMeshB == meshB) {
+				Collections.swap(manifolds, index, i);
+				return details;
+			}
 		}
+		CollisionDetails details = arena.takeManifold(meshA, meshB);
+		manifolds.add(details);
+		Collections.swap(manifolds, index, manifolds.size() - 1);
+		return details;
 	}
 
-	public static boolean applyCollisionAndBounce(PhysicalObject objA, PhysicalObject objB) {
-		// If there is collision - move object and return kinetic force
-		List<CollisionDetails> detailsList = PhysicalObject.getCollisionDetails(objA, objB);
+	/**
+	 * Get the contact manifolds between 2 objects, one for each pair of colliding
+	 * meshes.
+	 *
+	 * @param objA The 1st object to check.
+	 * @param objB The object to check against.
+	 *
+	 * @return The list of manifolds, empty if the objects are not colliding.
+	 */
+	public static List<CollisionDetails> getCollisionDetails(PhysicalObject objA, PhysicalObject objB) {
+		List<CollisionDetails> ret = new ArrayList<>();
+		getCollisionDetails(objA, objB, ret);
+		ret.removeIf((details) -> details.numPoints == 0);
+		return ret;
+	}
 
-		boolean collided = false;
-		for (CollisionDetails details : detailsList) {
-			collided = collided | PhysicalObject.applyImpulseResolution(details);
-		}
-		// Apply correction on first detail only as all collisions details here share
-		// the same parent objects.
-		if (collided) {
-			applySinkingCorrection(detailsList.get(0));
+	/**
+	 * Check the collision filters of 2 physical objects to determine whether they
+	 * can collide at all. Objects sharing a non-zero group always collide if the
+	 * group is positive and never if it is negative. Otherwise, the category of
+	 * each object must be in the mask of the other.
+	 *
+	 * @param objA The 1st physical object to check.
+	 * @param objB The 2nd physical object to check.
+	 *
+	 * @return Whether the 2 objects can collide.
+	 */
+	public static boolean shouldCollide(PhysicalObject objA, PhysicalObject objB) {
+		int group = objA.getCollisionGroup();
+		if (group != 0 && group == objB.getCollisionGroup()) {
+			return group > 0;
 		}
-		return collided;
+		return (objA.getCollisionCategory() & objB.getCollisionMask()) != 0
+				&& (objB.getCollisionCategory() & objA.getCollisionMask()) != 0;
 	}
 
 	/**
 	 * Do a broad O(1) complexity collision check between 2 physical objects to
-	 * determine whether a more complex collision check is required.
+	 * determine whether a more complex collision check is required, with their
+	 * cached bounds.
 	 *
 	 * @param objA The 1st physical object to check against.
 	 * @param objB The 2nd physical object to check against.
@@ -227,11 +248,6 @@ public interface PhysicalObject {
 	 * @return Whether the broad collision check returns positive or not.
 	 */
 	public static boolean requiresCollisionCheck(PhysicalObject objA, PhysicalObject objB) {
-		PVector dist = PVector.sub(objA.getPosition(), objB.getPosition());
-		PVector minDist = PVector.div(PVector.add(objA.getSize(), objB.getSize()), 2);
-		if (Math.abs(dist.x) < minDist.x && Math.abs(dist.y) < minDist.y) {
-			return true;
-		}
-		return false;
+		return objA.getCachedBounds().overlaps(objB.getCachedBounds());
 	}
 }
@@ -66,6 +66,87 @@ public class Polygons {
 		return uvVertices;
 	}
 
+	/////////////////////////
+	// Convex Hull Methods //
+	/////////////////////////
+
+	/**
+	 * Get the convex hull of a set of points, with Andrew's monotone chain
+	 * algorithm. The hull is counter-clockwise in a y-up frame, starts from the
+	 * point with the lowest x coordinate and has no collinear points.
+	 *
+	 * @param points The points to wrap.
+	 *
+	 * @return The vertices of the hull - the given points themselves, not copies.
+	 */
+	public static List<PVector> getConvexHull(List<PVector> points) {
+		List<PVector> sorted = new ArrayList<>(points);
+		sorted.sort((a, b) -> a.x != b.x ? Float.compare(a.x, b.x) : Float.compare(a.y, b.y));
+		if (sorted.size() < 3) {
+			return sorted;
+		}
+
+		// Build the lower hull from left to right, then the upper hull back.
+		PVector[] hull = new PVector[sorted.size() * 2];
+		int size = 0;
+		for (PVector p : sorted) {
+			while (size >= 2 && cross(hull[size - 2], hull[size - 1], p) <= 0) {
+				size--;
+			}
+			hull[size++] = p;
+		}
+		int lowerSize = size + 1;
+		for (int i = sorted.size() - 2; i >= 0; i--) {
+			PVector p = sorted.get(i);
+			while (size >= lowerSize && cross(hull[size - 2], hull[size - 1], p) <= 0) {
+				size--;
+			}
+			hull[size++] = p;
+		}
+		return new ArrayList<>(Arrays.asList(hull).subList(0, size - 1));
+	}
+
+	/**
+	 * Simplify a convex polygon by removing the vertices that matter the least -
+	 * the closest to the line between their neighbours - one at a time. Vertices
+	 * are removed while there are more than a budget, or while the removal moves
+	 * the polygon's edge in by less than a tolerance. The result stays convex and
+	 * inside the polygon, and keeps at least 3 vertices.
+	 *
+	 * @param polygon     The vertices of the convex polygon.
+	 * @param maxVertices The maximum number of vertices to keep.
+	 * @param tolerance   The distance under which vertices are always removed.
+	 *
+	 * @return The vertices of the simplified polygon.
+	 */
+	public static List<PVector> simplifyConvexPolygon(List<PVector> polygon, int maxVertices, float tolerance) {
+		List<PVector> ret = new ArrayList<>(polygon);
+		while (ret.size() > 3) {
+			int bestIndex = 0;
+			float minError = Float.MAX_VALUE;
+			for (int i = 0; i < ret.size(); i++) {
+				PVector previous = ret.get((i + ret.size() - 1) % ret.size());
+				PVector next = ret.get((i + 1) % ret.size());
+				float error = Math.abs(cross(previous, ret.get(i), next)) / PVector.dist(previous, next);
+				if (error < minError) {
+					minError = error;
+					bestIndex = i;
+				}
+			}
+			if (ret.size() <= maxVertices && minError >= tolerance) {
+				break;
+			}
+			ret.remove(bestIndex);
+		}
+		return ret;
+	}
+
+	// Get the cross product of the vectors from a to b and from a to c - positive
+	// if a, b and c turn counter-clockwise in a y-up frame.
+	private static float cross(PVector a, PVector b, PVector c) {
+		return (b.x - a.x) * (c.y - a.y) - (b.y - a.y) * (c.x - a.x);
+	}
+
 	//////////////////////
 	// Rotation Methods //
 	//////////////////////
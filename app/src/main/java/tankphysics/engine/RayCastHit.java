@@ -0,0 +1,62 @@
+package tankphysics.engine;
+
+import processing.core.PVector;
+
+/**
+ * Class representing the hit of a ray or shape cast on a physical object. The
+ * normal is the surface normal of the hit object at the hit point, facing the
+ * cast's origin.
+ */
+public class RayCastHit {
+	PhysicalObject object;
+	CollisionMesh mesh;
+	PVector point;
+	PVector normal;
+	float distance;
+
+	/////////////////////////
+	// Getters and Setters //
+	/////////////////////////
+
+	public PhysicalObject getPhysicalObject() {
+		return object;
+	}
+
+	public GameObject getObject() {
+		return object.getObject();
+	}
+
+	public CollisionMesh getMesh() {
+		return mesh;
+	}
+
+	public PVector getPoint() {
+		return point;
+	}
+
+	public PVector getNormal() {
+		return normal;
+	}
+
+	public float getDistance() {
+		return distance;
+	}
+
+	@Override
+	public String toString() {
+		return "Ray cast hit: {\n\tobject: " + object + ",\n\tpoint: [" + point.x + "," + point.y + "],\n\tnormal: ["
+				+ normal.x + "," + normal.y + "],\n\tdistance: " + distance + ",\n}";
+	}
+
+	//////////////////
+	// Constructors //
+	//////////////////
+
+	public RayCastHit(PhysicalObject object, CollisionMesh mesh, PVector point, PVector normal, float distance) {
+		this.object = object;
+		this.mesh = mesh;
+		this.point = point;
+		this.normal = normal;
+		this.distance = distance;
+	}
+}
@@ -1,27 +1,60 @@
 package tankphysics.engine;
 
-import java.util.HashSet;
-import java.util.stream.Stream;
+import java.util.ArrayList;
+import java.util.List;
 
 import processing.core.PVector;
 
 public class RigidBody implements Component, PhysicalObject {
 	private GameObject object;
-	private HashSet<CollisionMesh> hitbox;
+	private ArrayList<CollisionMesh> hitbox;
 	private PVector anchor = new PVector();
 	private PVector size;
 
+	// Cached world bounds, recalculated when the object or the hitbox change.
+	private AABB bounds = new AABB();
+	private GameObject boundsObject;
+	private int boundsTransformVersion;
+	private int boundsHitboxVersion;
+	private int hitboxVersion = 0;
+
+	// Mid-phase tree over the hitbox's meshes, for bodies with many of them. It is
+	// built from the bounds of the meshes in the body's frame and queries are
+	// moved to that frame, so it is only rebuilt when the hitbox changes. Queries
+	// take their memory from a contact arena, as the body may be in several pairs
+	// checked in parallel.
+	private static final int MESH_TREE_MIN_MESHES = 8;
+	private StaticBVH meshTree;
+	private int meshTreeHitboxVersion;
+
+	// The body's slot in a body store, which holds its velocities, inverse mass
+	// and inertia and sleep state.
+	BodyStore store;
+	int slot;
+
 	// Mass and linear force variables.
-	private PVector velocity = new PVector();
 	private float mass;
-	private float inverseMass;
-	private float inverseInertia;
 
 	// Torque related variables.
-	private float rotationalVelocity = 0f;
 	private float torque = 0f;
 	private float impulseMultipler = 1f;
 
+	// Handle given by the director attaching the object.
+	private long handle = HandleAllocator.NONE;
+
+	// Collision filtering
+	private int collisionCategory = PhysicalObject.DEFAULT_COLLISION_CATEGORY;
+	private int collisionMask = PhysicalObject.ALL_COLLISION_CATEGORIES;
+	private int collisionGroup = 0;
+
+	// Continuous collision detection.
+	private boolean continuous = false;
+	private PVector previousPosition;
+
+	// The body's island in the contact graph.
+	RigidBody islandParent;
+	int islandIndex;
+
 	/////////////////////////
 	// Getters and Setters //
 	/////////////////////////
@@ -32,23 +65,34 @@ public class RigidBody implements Component, PhysicalObject {
 
 	public void setMass(float mass) {
 		this.mass = mass;
-		this.inverseMass = 1 / mass;
+		store.inverseMass[slot] = 1 / mass;
 	}
 
 	public PVector getVelocity() {
-		return velocity.copy();
+		return new PVector(store.velocityX[slot], store.velocityY[slot]);
+	}
+
+	public void getVelocity(PVector out) {
+		out.set(store.velocityX[slot], store.velocityY[slot]);
 	}
 
 	public void setVelocity(PVector velocity) {
-		this.velocity = velocity;
+		setVelocity(velocity.x, velocity.y);
+	}
+
+	public void setVelocity(float x, float y) {
+		store.velocityX[slot] = x;
+		store.velocityY[slot] = y;
+		wakeUp();
 	}
 
 	public float getRotationalVelocity() {
-		return rotationalVelocity;
+		return store.angularVelocity[slot];
 	}
 
 	public void setRotationalVelocity(float rotationalVelocity) {
-		this.rotationalVelocity = rotationalVelocity;
+		store.angularVelocity[slot] = rotationalVelocity;
+		wakeUp();
 	}
 
 	public Iterable<CollisionMesh> getHitbox() {
@@ -67,19 +111,103 @@ public class RigidBody implements Component, PhysicalObject {
 		return object;
 	}
 
+	public boolean isContinuous() {
+		return continuous;
+	}
+
+	/**
+	 * Set whether the rigid body uses continuous collision detection. Continuous
+	 * bodies are swept from their previous position each frame, so fast bodies
+	 * can't tunnel through thin objects.
+	 *
+	 * @param continuous Whether to use continuous collision detection.
+	 */
+	public void setContinuous(boolean continuous) {
+		this.continuous = continuous;
+	}
+
+	public PVector getPreviousPosition() {
+		return previousPosition;
+	}
+
+	public boolean isAwake() {
+		return store.awake[slot];
+	}
+
+	/**
+	 * Wake the rigid body up, or put it to sleep. Sleeping bodies are not
+	 * integrated nor checked for collisions until something touches them, or a
+	 * velocity, force or impulse is applied to them.
+	 *
+	 * @param awake Whether the rigid body is awake.
+	 */
+	public void setAwake(boolean awake) {
+		store.awake[slot] = awake;
+		store.sleepTime[slot] = 0;
+		if (!awake) {
+			store.velocityX[slot] = 0;
+			store.velocityY[slot] = 0;
+			store.angularVelocity[slot] = 0;
+		}
+	}
+
+	public float getSleepTime() {
+		return store.sleepTime[slot];
+	}
+
+	// Wake the rigid body up if it is sleeping.
+	private void wakeUp() {
+		if (!store.awake[slot]) {
+			setAwake(true);
+		}
+	}
+
+	/**
+	 * Update how long the rigid body has been resting - moving slower than the
+	 * given velocities.
+	 *
+	 * @param deltaT             The duration of the step.
+	 * @param linearVelocity     The linear velocity under which the body rests.
+	 * @param rotationalVelocity The rotational velocity under which the body
+	 *                           rests.
+	 *
+	 * @return The time the body has been resting for.
+	 */
+	float updateSleepTime(float deltaT, float linearVelocity, float rotationalVelocity) {
+		float velocityX = store.velocityX[slot], velocityY = store.velocityY[slot];
+		if (velocityX * velocityX + velocityY * velocityY > linearVelocity * linearVelocity
+				|| Math.abs(store.angularVelocity[slot]) > rotationalVelocity) {
+			store.sleepTime[slot] = 0;
+		} else {
+			store.sleepTime[slot] += deltaT;
+		}
+		return store.sleepTime[slot];
+	}
+
+	/**
+	 * Get the radius of the largest circle centered on the object's position and
+	 * inside the hitbox, used to sweep continuous bodies.
+	 */
+	public float getCastRadius() {
+		float castRadius = 0;
+		for (int i = 0; i < hitbox.size(); i++) {
+			castRadius = Math.max(castRadius, hitbox.get(i).getInscribedRadius());
+		}
+		return castRadius;
+	}
+
 	public PVector getCOM() {
 		return anchor;
 	}
 
 	public void setRotation(float angle) {
-		for (CollisionMesh m : hitbox) {
-			m.setOrientation(angle, this);
+		for (int i = 0; i < hitbox.size(); i++) {
+			hitbox.get(i).setOrientation(angle, this);
 		}
-		this.size = Polygons.getRotatedBoxSize(this.object.getSize(), angle);
 	}
 
 	public float getInverseInertia() {
-		return inverseInertia;
+		return store.inverseInertia[slot];
 	}
 
 	////////////////////////
@@ -90,6 +218,7 @@ public class RigidBody implements Component, PhysicalObject {
 		this.object = object;
 		for (CollisionMesh m : hitbox) {
 			m.object = object;
+			m.setOrientation(object.getRotation(), this);
 		}
 		this.size = this.object.getSize().copy();
 	}
@@ -98,8 +227,61 @@ public class RigidBody implements Component, PhysicalObject {
 		return getHitbox();
 	}
 
+	public void queryMeshes(AABB area, List<CollisionMesh> out) {
+		updateBounds();
+		queryMeshes(area, out, new ContactArena());
+	}
+
+	/**
+	 * Add the body's meshes whose bounds overlap an area to a list, like
+	 * {@link #queryMeshes(AABB, List)}, taking the memory needed from an arena.
+	 * The body's bounds must be up to date, as only the cached ones are read.
+	 *
+	 * @param area  The area to query.
+	 * @param out   The list to add the overlapping meshes to.
+	 * @param arena The arena to take the query's scratch memory from.
+	 */
+	void queryMeshes(AABB area, List<CollisionMesh> out, ContactArena arena) {
+		if (hitbox.size() < MESH_TREE_MIN_MESHES) {
+			for (int i = 0; i < hitbox.size(); i++) {
+				if (hitbox.get(i).getCachedBounds().overlaps(area)) {
+					out.add(hitbox.get(i));
+				}
+			}
+			return;
+		}
+
+		// Move the area to the body's frame, as the box holding the turned area. Meshes
+		// found in it are checked against the area itself.
+		PVector position = object.getPosition();
+		float cos = (float) Math.cos(object.getRotation()), sin = (float) Math.sin(object.getRotation());
+		float centerX = (area.minX + area.maxX) / 2 - position.x, centerY = (area.minY + area.maxY) / 2 - position.y;
+		float halfX = (area.maxX - area.minX) / 2, halfY = (area.maxY - area.minY) / 2;
+		float localX = cos * centerX + sin * centerY, localY = cos * centerY - sin * centerX;
+		float extentX = Math.abs(cos) * halfX + Math.abs(sin) * halfY;
+		float extentY = Math.abs(sin) * halfX + Math.abs(cos) * halfY;
+		AABB localArea = arena.meshQueryArea;
+		localArea.set(localX - extentX, localY - extentY, localX + extentX, localY + extentY);
+		int numWords = (hitbox.size() + 63) >>> 6;
+		long[] mask = arena.getMeshQueryMask(numWords);
+		meshTree.queryIndices(localArea, mask, arena.getMeshQueryStack(meshTree.getStackSize()));
+		for (int word = 0; word < numWords; word++) {
+			for (long bits = mask[word]; bits != 0; bits &= bits - 1) {
+				CollisionMesh mesh = hitbox.get(word << 6 | Long.numberOfTrailingZeros(bits));
+				if (mesh.getCachedBounds().overlaps(area)) {
+					out.add(mesh);
+				}
+			}
+		}
+	}
+
 	public void setPosition(PVector position) {
-		object.setPosition(position);
+		setPosition(position.x, position.y);
+	}
+
+	public void setPosition(float x, float y) {
+		object.setPosition(x, y);
+		wakeUp();
 	}
 
 	public PVector getPosition() {
@@ -110,12 +292,71 @@ public class RigidBody implements Component, PhysicalObject {
 		return size;
 	}
 
+	/**
+	 * Get the world bounds of the rigid body, as the union of the bounds of its
+	 * hitbox meshes.
+	 */
+	public AABB getBounds() {
+		updateBounds();
+		return bounds;
+	}
+
+	public void updateBounds() {
+		if (boundsObject != object || boundsTransformVersion != object.getTransformVersion()
+				|| boundsHitboxVersion != hitboxVersion) {
+			float minX = Float.MAX_VALUE, minY = Float.MAX_VALUE;
+			float maxX = -Float.MAX_VALUE, maxY = -Float.MAX_VALUE;
+			for (int i = 0; i < hitbox.size(); i++) {
+				AABB meshBounds = hitbox.get(i).getBounds();
+				minX = Math.min(minX, meshBounds.minX);
+				minY = Math.min(minY, meshBounds.minY);
+				maxX = Math.max(maxX, meshBounds.maxX);
+				maxY = Math.max(maxY, meshBounds.maxY);
+			}
+			bounds.set(minX, minY, maxX, maxY);
+			boundsObject = object;
+			boundsTransformVersion = object.getTransformVersion();
+			boundsHitboxVersion = hitboxVersion;
+			updateMeshTree();
+		}
+	}
+
+	public AABB getCachedBounds() {
+		return bounds;
+	}
+
+	// Rebuild the mid-phase tree if the body has enough meshes for one, and
+	// changed hitbox since it was built. Called with the bounds, so the tree is up
+	// to date before contacts are computed in parallel.
+	private void updateMeshTree() {
+		if (hitbox.size() < MESH_TREE_MIN_MESHES) {
+			meshTree = null;
+		} else if (meshTree == null || meshTreeHitboxVersion != hitboxVersion) {
+			// Meshes are found by their world bounds, which grow as they turn, but always
+			// fit in the square around the disc holding the mesh. Widening that square
+			// by sqrt(2) keeps the mesh in it after turning it and the query area back
+			// to the body's frame.
+			AABB[] localBounds = new AABB[hitbox.size()];
+			for (int i = 0; i < hitbox.size(); i++) {
+				AABB b = new AABB();
+				hitbox.get(i).getLocalBounds(b);
+				float centerX = (b.minX + b.maxX) / 2, centerY = (b.minY + b.maxY) / 2;
+				float halfX = (b.maxX - b.minX) / 2, halfY = (b.maxY - b.minY) / 2;
+				float extent = (float) Math.sqrt(2 * (halfX * halfX + halfY * halfY));
+				b.set(centerX - extent, centerY - extent, centerX + extent, centerY + extent);
+				localBounds[i] = b;
+			}
+			meshTree = new StaticBVH(hitbox, localBounds);
+			meshTreeHitboxVersion = hitboxVersion;
+		}
+	}
+
 	public float getTorque() {
 		return torque;
 	}
 
 	public float getInverseMass() {
-		return inverseMass;
+		return store.inverseMass[slot];
 	}
 
 	public float getOrientation() {
@@ -128,8 +369,52 @@ public class RigidBody implements Component, PhysicalObject {
 		object.setRotation(angle);
 	}
 
-	public boolean addForCollisions() {
-		return true;
+	public int getCollisionCategory() {
+		return collisionCategory;
+	}
+
+	public int getCollisionMask() {
+		return collisionMask;
+	}
+
+	public long getHandle() {
+		return handle;
+	}
+
+	public void setHandle(long handle) {
+		this.handle = handle;
+	}
+
+	public int getCollisionGroup() {
+		return collisionGroup;
+	}
+
+	public void setCollisionCategory(int category) {
+		this.collisionCategory = category;
+	}
+
+	public void setCollisionMask(int mask) {
+		this.collisionMask = mask;
+	}
+
+	public void setCollisionGroup(int group) {
+		this.collisionGroup = group;
+	}
+
+	/**
+	 * Set the collision filter of the rigid body. Two objects only collide if the
+	 * category of each is in the mask of the other, unless they share a non-zero
+	 * group - in which case they always collide if the group is positive, and
+	 * never if it is negative.
+	 *
+	 * @param category The category bits of the rigid body.
+	 * @param mask     The bits of the categories the rigid body collides with.
+	 * @param group    The collision group of the rigid body, or 0 for none.
+	 */
+	public void setCollisionFilter(int category, int mask, int group) {
+		this.collisionCategory = category;
+		this.collisionMask = mask;
+		this.collisionGroup = group;
 	}
 
 	/////////////////////////////////
@@ -141,9 +426,11 @@ public class RigidBody implements Component, PhysicalObject {
 		for (EngineEventListener l : getObject().getListeners("impulse")) {
 			l.call(ref.getObject(), impulse);
 		}
-		velocity = PVector.add(velocity, PVector.mult(impulse, getInverseMass()));
+		store.velocityX[slot] += impulse.x * store.inverseMass[slot];
+		store.velocityY[slot] += impulse.y * store.inverseMass[slot];
+		wakeUp();
 		if (checkRotationalVelocity) {
-			rotationalVelocity += inverseInertia * contactPt.cross(impulse).z;
+			store.angularVelocity[slot] += store.inverseInertia[slot] * contactPt.cross(impulse).z;
 		}
 	}
 
@@ -158,8 +445,12 @@ public class RigidBody implements Component, PhysicalObject {
 			if (m.object == null) {
 				hitbox.add(m);
 				m.object = this.object;
+				if (object != null) {
+					m.setOrientation(object.getRotation(), this);
+				}
 			}
 		}
+		hitboxVersion++;
 		calculateAndStoreInertia();
 	}
 
@@ -172,9 +463,13 @@ public class RigidBody implements Component, PhysicalObject {
 					inertia += (float) Math.pow(PVector.sub(v, anchor).mag(), 2)
 							* (getMass() / (hitbox.size() * m.getNumVertices()));
 				}
+			} else if (m.getMeshType() == CollisionMesh.MeshType.CIRCLE) {
+				float radius = m.getRadius();
+				inertia += (radius * radius / 2 + (float) Math.pow(PVector.sub(m.getCOM(), anchor).mag(), 2))
+						* (getMass() / hitbox.size());
 			}
 		}
-		inverseInertia = inertia != 0 ? 1 / inertia : 0;
+		store.inverseInertia[slot] = inertia != 0 ? 1 / inertia : 0;
 	}
 
 	/**
@@ -190,6 +485,7 @@ public class RigidBody implements Component, PhysicalObject {
 				hitbox.remove(m);
 			}
 		}
+		hitboxVersion++;
 	}
 
 	/**
@@ -198,16 +494,28 @@ public class RigidBody implements Component, PhysicalObject {
 	 * @param forces The list of forces to apply to the rigid body.
 	 * @param deltaT The amount of time
 	 */
-	public void apply(Stream<Force> forces, float deltaT) {
-		forces.forEach((f) -> {
-			PVector acc = f.getVectorForce();
+	public void apply(Iterable<Force> forces, float deltaT) {
+		PVector position = object.getPosition();
+		if (continuous) {
+			if (previousPosition == null) {
+				previousPosition = new PVector();
+			}
+			previousPosition.set(position);
+		}
+		float velocityX = store.velocityX[slot], velocityY = store.velocityY[slot];
+		for (Force f : forces) {
+			float accelerationX = f.getVectorForce().x, accelerationY = f.getVectorForce().y;
 			if (!f.isMassProportional()) {
-				acc.mult(inverseMass);
+				accelerationX *= store.inverseMass[slot];
+				accelerationY *= store.inverseMass[slot];
 			}
-			velocity.add(PVector.mult(acc, deltaT));
-		});
+			velocityX += accelerationX * deltaT;
+			velocityY += accelerationY * deltaT;
+		}
+		store.velocityX[slot] = velocityX;
+		store.velocityY[slot] = velocityY;
 		// Update new velocity to the game object's position.
-		object.setPosition(PVector.add(object.getPosition(), PVector.mult(velocity, deltaT)));
+		object.setPosition(position.x + velocityX * deltaT, position.y + velocityY * deltaT);
 		setRotationalVelocity(getRotationalVelocity() + torque * deltaT);
 		setOrientation(getOrientation() + getRotationalVelocity() * deltaT);
 	}
@@ -220,9 +528,9 @@ public class RigidBody implements Component, PhysicalObject {
 	 *                  surfaces without inertia applied.
 	 */
 	public RigidBody(float mass, CollisionMesh... hitbox) {
-		this.mass = mass;
-		this.inverseMass = 1 / mass;
-		this.hitbox = new HashSet<>();
+		BodyStore.isolate(this);
+		setMass(mass);
+		this.hitbox = new ArrayList<>();
 		attachToHitbox(hitbox);
 	}
 }
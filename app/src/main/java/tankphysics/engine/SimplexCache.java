@@ -0,0 +1,52 @@
+package tankphysics.engine;
+
+/**
+ * Class caching the simplex of a distance query between 2 meshes, so the next
+ * query on the same meshes starts from it. Shapes barely move from one frame to
+ * the next, so the cached simplex is usually already the closest one. Keep one
+ * cache per pair of meshes - the cache also holds the working simplex, so it
+ * must not be shared between threads.
+ */
+public class SimplexCache {
+	// Cached simplex - indices of the support vertices on both meshes.
+	int count = 0;
+	int[] indexA = new int[3];
+	int[] indexB = new int[3];
+
+	// Working simplex - support points on both meshes, their difference and the
+	// barycentric coordinates of the closest point.
+	float[] pointAX = new float[3];
+	float[] pointAY = new float[3];
+	float[] pointBX = new float[3];
+	float[] pointBY = new float[3];
+	float[] pointX = new float[3];
+	float[] pointY = new float[3];
+	float[] weights = new float[3];
+
+	/**
+	 * Reset the cache, so the next query starts from scratch.
+	 */
+	public void reset() {
+		count = 0;
+	}
+
+	// Copy the i-th vertex of the working simplex to the j-th.
+	void copyVertex(int i, int j) {
+		indexA[j] = indexA[i];
+		indexB[j] = indexB[i];
+		pointAX[j] = pointAX[i];
+		pointAY[j] = pointAY[i];
+		pointBX[j] = pointBX[i];
+		pointBY[j] = pointBY[i];
+		pointX[j] = pointX[i];
+		pointY[j] = pointY[i];
+		weights[j] = weights[i];
+	}
+
+	//////////////////
+	// Constructors //
+	//////////////////
+
+	public SimplexCache() {
+	}
+}
@@ -0,0 +1,290 @@
+package tankphysics.engine;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.BiConsumer;
+
+/**
+ * Uniform grid broadphase, with cells hashed by their integer coordinates. Works
+ * best when objects are of similar size, close to the cell size. Each object is
+ * binned in all the cells its bounds cover, and is only rebinned when its cell
+ * range changes.
+ *
+ * Objects that aren't rigid bodies are considered immovable, and pairs between
+ * 2 immovable objects are never reported.
+ */
+public class SpatialHashGrid implements Broadphase {
+	public static final float DEFAULT_CELL_SIZE = 2;
+
+	private float cellSize;
+	private float inverseCellSize;
+	// Occupied cells, stored in a dense array indexed through a map of their keys.
+	// Emptied cells are kept for reuse.
+	private LongIntMap cellIndices = new LongIntMap();
+	private ArrayList<ArrayList<Proxy>> cells = new ArrayList<>();
+	private int[] freeCells = new int[16];
+	private int numFreeCells = 0;
+	private ObjectTable<Proxy> proxies = new ObjectTable<>();
+	private ArrayList<Proxy> movingProxies = new ArrayList<>();
+	private int nextId = 0;
+	private int queryStamp = 0;
+
+	// Class representing a physical object in the grid.
+	private class Proxy {
+		PhysicalObject object;
+		AABB bounds = new AABB();
+		boolean moving;
+		int id;
+		int queryStamp;
+
+		// Range of cells covered by the object.
+		int minCellX, minCellY, maxCellX, maxCellY;
+
+		public Proxy(PhysicalObject object, boolean moving, int id) {
+			this.object = object;
+			this.moving = moving;
+			this.id = id;
+			this.bounds.setFrom(object);
+		}
+	}
+
+	/////////////////////////
+	// Getters and Setters //
+	/////////////////////////
+
+	public float getCellSize() {
+		return cellSize;
+	}
+
+	public boolean contains(PhysicalObject obj) {
+		return proxies.containsKey(obj);
+	}
+
+	public AABB getBounds(PhysicalObject obj) {
+		Proxy proxy = proxies.get(obj);
+		return proxy == null ? null : proxy.bounds;
+	}
+
+	////////////////////
+	// Proxy Handling //
+	////////////////////
+
+	public void add(PhysicalObject obj) {
+		if (proxies.containsKey(obj)) {
+			return;
+		}
+		Proxy proxy = new Proxy(obj, obj instanceof RigidBody, nextId++);
+		proxies.put(obj, proxy);
+		if (proxy.moving) {
+			movingProxies.add(proxy);
+		}
+		setCellRange(proxy);
+		insertInCells(proxy);
+	}
+
+	public void remove(PhysicalObject obj) {
+		Proxy proxy = proxies.remove(obj);
+		if (proxy == null) {
+			return;
+		}
+		if (proxy.moving) {
+			movingProxies.remove(proxy);
+		}
+		removeFromCells(proxy);
+	}
+
+	// Get the hash key of the cell at the given cell coordinates.
+	private static long getCellKey(int cellX, int cellY) {
+		return ((long) cellX << 32) | (cellY & 0xFFFFFFFFL);
+	}
+
+	private int getCellCoordinate(float value) {
+		return (int) Math.floor(value * inverseCellSize);
+	}
+
+	// Set the cell range of a proxy from its bounds.
+	private void setCellRange(Proxy proxy) {
+		proxy.minCellX = getCellCoordinate(proxy.bounds.minX);
+		proxy.minCellY = getCellCoordinate(proxy.bounds.minY);
+		proxy.maxCellX = getCellCoordinate(proxy.bounds.maxX);
+		proxy.maxCellY = getCellCoordinate(proxy.bounds.maxY);
+	}
+
+	private void insertInCells(Proxy proxy) {
+		for (int x = proxy.minCellX; x <= proxy.maxCellX; x++) {
+			for (int y = proxy.minCellY; y <= proxy.maxCellY; y++) {
+				long key = getCellKey(x, y);
+				int index = cellIndices.get(key);
+				if (index == -1) {
+					if (numFreeCells > 0) {
+						index = freeCells[--numFreeCells];
+					} else {
+						index = cells.size();
+						cells.add(new ArrayList<>());
+					}
+					cellIndices.put(key, index);
+				}
+				cells.get(index).add(proxy);
+			}
+		}
+	}
+
+	private void removeFromCells(Proxy proxy) {
+		for (int x = proxy.minCellX; x <= proxy.maxCellX; x++) {
+			for (int y = proxy.minCellY; y <= proxy.maxCellY; y++) {
+				long key = getCellKey(x, y);
+				int index = cellIndices.get(key);
+				if (index != -1) {
+					ArrayList<Proxy> cell = cells.get(index);
+					cell.remove(proxy);
+					if (cell.isEmpty()) {
+						cellIndices.remove(key);
+						if (numFreeCells == freeCells.length) {
+							freeCells = Arrays.copyOf(freeCells, numFreeCells * 2);
+						}
+						freeCells[numFreeCells++] = index;
+					}
+				}
+			}
+		}
+	}
+
+	///////////////////////
+	// Broadphase Update //
+	///////////////////////
+
+	public void update() {
+		for (Proxy proxy : movingProxies) {
+			rebin(proxy);
+		}
+	}
+
+	public void update(PhysicalObject obj) {
+		Proxy proxy = proxies.get(obj);
+		if (proxy != null) {
+			rebin(proxy);
+		}
+	}
+
+	// Refresh a proxy's bounds and move it to its new cells if its range changed.
+	private void rebin(Proxy proxy) {
+		proxy.bounds.setFrom(proxy.object);
+		int minCellX = getCellCoordinate(proxy.bounds.minX);
+		int minCellY = getCellCoordinate(proxy.bounds.minY);
+		int maxCellX = getCellCoordinate(proxy.bounds.maxX);
+		int maxCellY = getCellCoordinate(proxy.bounds.maxY);
+		if (minCellX != proxy.minCellX || minCellY != proxy.minCellY || maxCellX != proxy.maxCellX
+				|| maxCellY != proxy.maxCellY) {
+			removeFromCells(proxy);
+			proxy.minCellX = minCellX;
+			proxy.minCellY = minCellY;
+			proxy.maxCellX = maxCellX;
+			proxy.maxCellY = maxCellY;
+			insertInCells(proxy);
+		}
+	}
+
+	/**
+	 * Report every pair of overlapping objects where at least one of them is
+	 * moving. A pair sharing several cells is only reported from the cell holding
+	 * the lower corner of the intersection of both bounds.
+	 *
+	 * @param callback The callback called for each overlapping pair.
+	 */
+	public void findPairs(BiConsumer<PhysicalObject, PhysicalObject> callback) {
+		for (Proxy proxy : movingProxies) {
+			for (int x = proxy.minCellX; x <= proxy.maxCellX; x++) {
+				for (int y = proxy.minCellY; y <= proxy.maxCellY; y++) {
+					ArrayList<Proxy> cell = cells.get(cellIndices.get(getCellKey(x, y)));
+					for (int i = 0; i < cell.size(); i++) {
+						Proxy other = cell.get(i);
+						// Moving pairs are seen from both sides - report from the lowest id only.
+						if (other == proxy || (other.moving && other.id < proxy.id)) {
+							continue;
+						}
+						if (x == Math.max(proxy.minCellX, other.minCellX)
+								&& y == Math.max(proxy.minCellY, other.minCellY)
+								&& proxy.bounds.overlaps(other.bounds)) {
+							callback.accept(proxy.object, other.object);
+						}
+					}
+				}
+			}
+		}
+	}
+
+	public List<PhysicalObject> query(PhysicalObject obj) {
+		Proxy proxy = proxies.get(obj);
+		if (proxy == null) {
+			return new ArrayList<>();
+		}
+		rebin(proxy);
+		List<PhysicalObject> ret = query(proxy.bounds);
+		ret.remove(obj);
+		return ret;
+	}
+
+	/**
+	 * Get all objects overlapping a given area. If the area covers more cells than
+	 * there are occupied cells, the occupied cells are walked instead.
+	 *
+	 * @param area The area to query.
+	 *
+	 * @return The list of objects overlapping the area.
+	 */
+	public List<PhysicalObject> query(AABB area) {
+		List<PhysicalObject> ret = new ArrayList<>();
+		int minCellX = getCellCoordinate(area.minX);
+		int minCellY = getCellCoordinate(area.minY);
+		int maxCellX = getCellCoordinate(area.maxX);
+		int maxCellY = getCellCoordinate(area.maxY);
+		queryStamp++;
+		if ((long) (maxCellX - minCellX + 1) * (maxCellY - minCellY + 1) > cellIndices.size()) {
+			// Emptied cells have no objects to add.
+			for (int i = 0; i < cells.size(); i++) {
+				addOverlapping(cells.get(i), area, ret);
+			}
+		} else {
+			for (int x = minCellX; x <= maxCellX; x++) {
+				for (int y = minCellY; y <= maxCellY; y++) {
+					int index = cellIndices.get(getCellKey(x, y));
+					if (index != -1) {
+						addOverlapping(cells.get(index), area, ret);
+					}
+				}
+			}
+		}
+		return ret;
+	}
+
+	// Add the objects of a cell overlapping an area that weren't already found.
+	private void addOverlapping(ArrayList<Proxy> cell, AABB area, List<PhysicalObject> ret) {
+		for (int i = 0; i < cell.size(); i++) {
+			Proxy other = cell.get(i);
+			if (other.queryStamp != queryStamp && other.bounds.overlaps(area)) {
+				other.queryStamp = queryStamp;
+				ret.add(other.object);
+			}
+		}
+	}
+
+	//////////////////
+	// Constructors //
+	//////////////////
+
+	/**
+	 * Constructor for a spatial hash grid broadphase.
+	 *
+	 * @param cellSize The width and height of a grid cell. Should be close to the
+	 *                 size of the common moving object.
+	 */
+	public SpatialHashGrid(float cellSize) {
+		this.cellSize = cellSize;
+		this.inverseCellSize = 1 / cellSize;
+	}
+
+	public SpatialHashGrid() {
+		this(DEFAULT_CELL_SIZE);
+	}
+}
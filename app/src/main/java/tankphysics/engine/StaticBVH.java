@@ -0,0 +1,305 @@
+package tankphysics.engine;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Compact bounding volume hierarchy for objects that never move. The tree is
+ * built once, top-down, by splitting objects at the median of their centers on
+ * the longest axis. Nodes are stored depth-first in flat arrays - the left child
+ * of a node is always the next node, so only the right child's index is stored.
+ * Leaves point to a range of the reordered object array.
+ *
+ * The tree has to be rebuilt if any of its objects moves or is removed. Queries
+ * and ray casts share one traversal stack, so a tree must only be queried from
+ * one thread at a time - except through queryIndices, which takes the caller's
+ * stack.
+ */
+public class StaticBVH {
+	private static final int MAX_LEAF_SIZE = 2;
+
+	// Nodes
+	private int numNodes = 0;
+	private float[] minX, minY, maxX, maxY;
+	private int[] rightChild;
+	private int[] firstObject;
+	private int[] numObjects;
+
+	// Objects, in leaf order, with their index in the collection the tree was
+	// built from.
+	private PhysicalObject[] objects;
+	private AABB[] bounds;
+	private int[] indices;
+	private int depth = 0;
+
+	// Traversal stack. Children are pushed in pairs, so the stack never holds more
+	// than a node per level and 1 more.
+	private int[] stack;
+
+	/////////////////////////
+	// Getters and Setters //
+	/////////////////////////
+
+	public int size() {
+		return objects.length;
+	}
+
+	public boolean isEmpty() {
+		return objects.length == 0;
+	}
+
+	/**
+	 * Get the size of traversal stack needed by the hierarchy's queries.
+	 */
+	public int getStackSize() {
+		return depth + 2;
+	}
+
+	///////////////////
+	// Build Methods //
+	///////////////////
+
+	// Build the subtree for objects in [start, end), and return its node index.
+	private int build(int start, int end, int nodeDepth) {
+		int node = numNodes++;
+		depth = Math.max(depth, nodeDepth);
+
+		// Get bounds of the node and of the object centers.
+		float nodeMinX = Float.MAX_VALUE, nodeMinY = Float.MAX_VALUE;
+		float nodeMaxX = -Float.MAX_VALUE, nodeMaxY = -Float.MAX_VALUE;
+		float centerMinX = Float.MAX_VALUE, centerMinY = Float.MAX_VALUE;
+		float centerMaxX = -Float.MAX_VALUE, centerMaxY = -Float.MAX_VALUE;
+		for (int i = start; i < end; i++) {
+			AABB b = bounds[i];
+			nodeMinX = Math.min(nodeMinX, b.minX);
+			nodeMinY = Math.min(nodeMinY, b.minY);
+			nodeMaxX = Math.max(nodeMaxX, b.maxX);
+			nodeMaxY = Math.max(nodeMaxY, b.maxY);
+			float centerX = (b.minX + b.maxX) / 2;
+			float centerY = (b.minY + b.maxY) / 2;
+			centerMinX = Math.min(centerMinX, centerX);
+			centerMinY = Math.min(centerMinY, centerY);
+			centerMaxX = Math.max(centerMaxX, centerX);
+			centerMaxY = Math.max(centerMaxY, centerY);
+		}
+		minX[node] = nodeMinX;
+		minY[node] = nodeMinY;
+		maxX[node] = nodeMaxX;
+		maxY[node] = nodeMaxY;
+
+		if (end - start <= MAX_LEAF_SIZE) {
+			firstObject[node] = start;
+			numObjects[node] = end - start;
+			rightChild[node] = -1;
+			return node;
+		}
+
+		// Split at the median on the longest axis of the centers.
+		boolean splitOnX = centerMaxX - centerMinX >= centerMaxY - centerMinY;
+		int mid = (start + end) / 2;
+		select(start, end - 1, mid, splitOnX);
+
+		numObjects[node] = 0;
+		build(start, mid, nodeDepth + 1);
+		rightChild[node] = build(mid, end, nodeDepth + 1);
+		return node;
+	}
+
+	private float getCenter(int i, boolean onX) {
+		return onX ? bounds[i].minX + bounds[i].maxX : bounds[i].minY + bounds[i].maxY;
+	}
+
+	// Partially sort objects in [low, high] so the k-th object is at its sorted
+	// position on the given axis (quickselect).
+	private void select(int low, int high, int k, boolean onX) {
+		while (low < high) {
+			float pivot = getCenter((low + high) >>> 1, onX);
+			int i = low, j = high;
+			while (i <= j) {
+				while (getCenter(i, onX) < pivot) {
+					i++;
+				}
+				while (getCenter(j, onX) > pivot) {
+					j--;
+				}
+				if (i <= j) {
+					swap(i++, j--);
+				}
+			}
+			if (k <= j) {
+				high = j;
+			} else if (k >= i) {
+				low = i;
+			} else {
+				return;
+			}
+		}
+	}
+
+	private void swap(int i, int j) {
+		PhysicalObject o = objects[i];
+		objects[i] = objects[j];
+		objects[j] = o;
+		AABB b = bounds[i];
+		bounds[i] = bounds[j];
+		bounds[j] = b;
+		int index = indices[i];
+		indices[i] = indices[j];
+		indices[j] = index;
+	}
+
+	///////////////////
+	// Query Methods //
+	///////////////////
+
+	/**
+	 * Add all objects overlapping a given area to a list.
+	 *
+	 * @param area The area to query.
+	 * @param out  The list to add the overlapping objects to.
+	 */
+	public void query(AABB area, List<PhysicalObject> out) {
+		if (numNodes == 0) {
+			return;
+		}
+		int top = 0;
+		stack[top++] = 0;
+		while (top > 0) {
+			int node = stack[--top];
+			if (!(minX[node] < area.maxX && area.minX < maxX[node] && minY[node] < area.maxY
+					&& area.minY < maxY[node])) {
+				continue;
+			}
+			if (numObjects[node] > 0) {
+				for (int i = firstObject[node]; i < firstObject[node] + numObjects[node]; i++) {
+					if (bounds[i].overlaps(area)) {
+						out.add(objects[i]);
+					}
+				}
+			} else {
+				stack[top++] = rightChild[node];
+				stack[top++] = node + 1;
+			}
+		}
+	}
+
+	/**
+	 * Set the bits of the indices of all objects overlapping a given area in a
+	 * mask. Indices are positions in the collection the hierarchy was built from,
+	 * so reading the mask in order gives the objects in that collection's order.
+	 *
+	 * @param area  The area to query.
+	 * @param mask  The mask to set bits in, with a bit for each object.
+	 * @param stack The traversal stack to use, of at least
+	 *              {@link #getStackSize()} nodes.
+	 */
+	public void queryIndices(AABB area, long[] mask, int[] stack) {
+		if (numNodes == 0) {
+			return;
+		}
+		int top = 0;
+		stack[top++] = 0;
+		while (top > 0) {
+			int node = stack[--top];
+			if (!(minX[node] < area.maxX && area.minX < maxX[node] && minY[node] < area.maxY
+					&& area.minY < maxY[node])) {
+				continue;
+			}
+			if (numObjects[node] > 0) {
+				for (int i = firstObject[node]; i < firstObject[node] + numObjects[node]; i++) {
+					if (bounds[i].overlaps(area)) {
+						mask[indices[i] >>> 6] |= 1L << indices[i];
+					}
+				}
+			} else {
+				stack[top++] = rightChild[node];
+				stack[top++] = node + 1;
+			}
+		}
+	}
+
+	/**
+	 * Cast a ray through the hierarchy, calling the callback for each object whose
+	 * bounds are crossed by the ray.
+	 */
+	public void rayCast(float originX, float originY, float dirX, float dirY, float maxDistance,
+			Broadphase.RayCastCallback callback) {
+		if (numNodes == 0) {
+			return;
+		}
+		int top = 0;
+		stack[top++] = 0;
+		while (top > 0) {
+			int node = stack[--top];
+			if (AABB.rayCast(minX[node], minY[node], maxX[node], maxY[node], originX, originY, dirX, dirY,
+					maxDistance) < 0) {
+				continue;
+			}
+			if (numObjects[node] > 0) {
+				for (int i = firstObject[node]; i < firstObject[node] + numObjects[node]; i++) {
+					if (bounds[i].rayCast(originX, originY, dirX, dirY, maxDistance) >= 0) {
+						maxDistance = callback.call(objects[i], maxDistance);
+						if (maxDistance <= 0) {
+							return;
+						}
+					}
+				}
+			} else {
+				stack[top++] = rightChild[node];
+				stack[top++] = node + 1;
+			}
+		}
+	}
+
+	//////////////////
+	// Constructors //
+	//////////////////
+
+	/**
+	 * Build a static bounding volume hierarchy over a collection of objects, using
+	 * their current bounds.
+	 *
+	 * @param staticObjects The objects to build the hierarchy for.
+	 */
+	public StaticBVH(Collection<? extends PhysicalObject> staticObjects) {
+		this(new ArrayList<>(staticObjects), null);
+	}
+
+	/**
+	 * Build a static bounding volume hierarchy over a list of objects with given
+	 * bounds, which can be in any frame as long as queries are in the same one.
+	 *
+	 * @param staticObjects The objects to build the hierarchy for.
+	 * @param objectBounds  The bounds of each object, in the list's order, or null
+	 *                      to use the objects' current bounds. They are copied.
+	 */
+	StaticBVH(List<? extends PhysicalObject> staticObjects, AABB[] objectBounds) {
+		int n = staticObjects.size();
+		objects = staticObjects.toArray(new PhysicalObject[n]);
+		bounds = new AABB[n];
+		indices = new int[n];
+		for (int i = 0; i < n; i++) {
+			bounds[i] = new AABB();
+			if (objectBounds == null) {
+				bounds[i].setFrom(objects[i]);
+			} else {
+				bounds[i].set(objectBounds[i]);
+			}
+			indices[i] = i;
+		}
+
+		int maxNodes = Math.max(1, 2 * n - 1);
+		minX = new float[maxNodes];
+		minY = new float[maxNodes];
+		maxX = new float[maxNodes];
+		maxY = new float[maxNodes];
+		rightChild = new int[maxNodes];
+		firstObject = new int[maxNodes];
+		numObjects = new int[maxNodes];
+		if (n > 0) {
+			build(0, n, 0);
+		}
+		stack = new int[getStackSize()];
+	}
+}
@@ -0,0 +1,258 @@
+package tankphysics.engine;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiConsumer;
+
+/**
+ * Incremental sweep and prune broadphase. Keeps the interval endpoints of every
+ * physical object on the x axis in a sorted array. On each update, only the
+ * endpoints of the objects that moved are shifted back into place, which is
+ * close to O(n) as objects move little between frames. Pairs are then found by
+ * sweeping the sorted endpoints and checking the y axis of open intervals.
+ *
+ * Objects that aren't rigid bodies are considered immovable, and pairs between
+ * 2 immovable objects are never reported.
+ */
+public class SweepAndPrune implements Broadphase {
+	private static final int INITIAL_CAPACITY = 64;
+
+	private ObjectTable<Proxy> proxies = new ObjectTable<>();
+	private ArrayList<Proxy> movingProxies = new ArrayList<>();
+	private Endpoint[] endpoints = new Endpoint[INITIAL_CAPACITY];
+	private int numEndpoints = 0;
+
+	// Buffer of currently open intervals during a sweep.
+	private ArrayList<Proxy> openProxies = new ArrayList<>();
+
+	// Class representing a physical object in the broadphase.
+	private class Proxy {
+		PhysicalObject object;
+		AABB bounds = new AABB();
+		boolean moving;
+		Endpoint min;
+		Endpoint max;
+
+		public Proxy(PhysicalObject object, boolean moving) {
+			this.object = object;
+			this.moving = moving;
+			this.bounds.setFrom(object);
+			this.min = new Endpoint(this, true);
+			this.max = new Endpoint(this, false);
+		}
+	}
+
+	// Class representing one end of a proxy's interval on the x axis.
+	private class Endpoint {
+		Proxy proxy;
+		boolean isMin;
+		int index;
+
+		float getValue() {
+			return isMin ? proxy.bounds.minX : proxy.bounds.maxX;
+		}
+
+		public Endpoint(Proxy proxy, boolean isMin) {
+			this.proxy = proxy;
+			this.isMin = isMin;
+		}
+	}
+
+	////////////////////
+	// Proxy Handling //
+	////////////////////
+
+	public boolean contains(PhysicalObject obj) {
+		return proxies.containsKey(obj);
+	}
+
+	public AABB getBounds(PhysicalObject obj) {
+		Proxy proxy = proxies.get(obj);
+		return proxy == null ? null : proxy.bounds;
+	}
+
+	/**
+	 * Add a physical object to the broadphase.
+	 *
+	 * @param obj The physical object to add.
+	 */
+	public void add(PhysicalObject obj) {
+		if (proxies.containsKey(obj)) {
+			return;
+		}
+		Proxy proxy = new Proxy(obj, obj instanceof RigidBody);
+		proxies.put(obj, proxy);
+		if (proxy.moving) {
+			movingProxies.add(proxy);
+		}
+		insertEndpoint(proxy.min);
+		insertEndpoint(proxy.max);
+	}
+
+	/**
+	 * Remove a physical object from the broadphase.
+	 *
+	 * @param obj The physical object to remove.
+	 */
+	public void remove(PhysicalObject obj) {
+		Proxy proxy = proxies.remove(obj);
+		if (proxy == null) {
+			return;
+		}
+		if (proxy.moving) {
+			movingProxies.remove(proxy);
+		}
+
+		// Compact endpoints over the removed proxy's endpoints.
+		int shift = 0;
+		for (int i = 0; i < numEndpoints; i++) {
+			if (endpoints[i].proxy == proxy) {
+				shift++;
+			} else if (shift > 0) {
+				endpoints[i - shift] = endpoints[i];
+				endpoints[i - shift].index = i - shift;
+			}
+		}
+		for (int i = numEndpoints - shift; i < numEndpoints; i++) {
+			endpoints[i] = null;
+		}
+		numEndpoints -= shift;
+	}
+
+	// Insert an endpoint in sorted position using a binary search.
+	private void insertEndpoint(Endpoint e) {
+		if (numEndpoints == endpoints.length) {
+			Endpoint[] grown = new Endpoint[endpoints.length * 2];
+			System.arraycopy(endpoints, 0, grown, 0, numEndpoints);
+			endpoints = grown;
+		}
+		float value = e.getValue();
+		int low = 0, high = numEndpoints;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (endpoints[mid].getValue() <= value) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		System.arraycopy(endpoints, low, endpoints, low + 1, numEndpoints - low);
+		numEndpoints++;
+		endpoints[low] = e;
+		for (int i = low; i < numEndpoints; i++) {
+			endpoints[i].index = i;
+		}
+	}
+
+	///////////////////////
+	// Broadphase Update //
+	///////////////////////
+
+	/**
+	 * Refresh the bounds of every moving object, and shift the endpoints of the
+	 * objects that moved back to their sorted position.
+	 */
+	public void update() {
+		for (Proxy proxy : movingProxies) {
+			float oldMinX = proxy.bounds.minX;
+			float oldMaxX = proxy.bounds.maxX;
+			proxy.bounds.setFrom(proxy.object);
+			if (proxy.bounds.minX != oldMinX || proxy.bounds.maxX != oldMaxX) {
+				resort(proxy.min);
+				resort(proxy.max);
+			}
+		}
+	}
+
+	/**
+	 * Refresh the bounds of a single object, moving or not.
+	 *
+	 * @param obj The object to refresh the bounds of.
+	 */
+	public void update(PhysicalObject obj) {
+		Proxy proxy = proxies.get(obj);
+		if (proxy != null) {
+			proxy.bounds.setFrom(obj);
+			resort(proxy.min);
+			resort(proxy.max);
+		}
+	}
+
+	// Shift an endpoint left or right until the array is sorted again.
+	private void resort(Endpoint e) {
+		float value = e.getValue();
+		int i = e.index;
+		while (i > 0 && endpoints[i - 1].getValue() > value) {
+			endpoints[i] = endpoints[i - 1];
+			endpoints[i].index = i;
+			i--;
+		}
+		while (i < numEndpoints - 1 && endpoints[i + 1].getValue() < value) {
+			endpoints[i] = endpoints[i + 1];
+			endpoints[i].index = i;
+			i++;
+		}
+		endpoints[i] = e;
+		e.index = i;
+	}
+
+	/**
+	 * Sweep the sorted endpoints and report every pair of overlapping objects
+	 * where at least one of them is moving.
+	 *
+	 * @param callback The callback called for each overlapping pair.
+	 */
+	public void findPairs(BiConsumer<PhysicalObject, PhysicalObject> callback) {
+		openProxies.clear();
+		for (int i = 0; i < numEndpoints; i++) {
+			Endpoint e = endpoints[i];
+			if (e.isMin) {
+				for (Proxy open : openProxies) {
+					if ((open.moving || e.proxy.moving) && open.bounds.overlaps(e.proxy.bounds)) {
+						callback.accept(open.object, e.proxy.object);
+					}
+				}
+				openProxies.add(e.proxy);
+			} else {
+				openProxies.remove(e.proxy);
+			}
+		}
+	}
+
+	/**
+	 * Get all objects overlapping the current bounds of a given object.
+	 *
+	 * @param obj The object to query against. Its bounds are refreshed first.
+	 *
+	 * @return The list of objects overlapping the given object.
+	 */
+	public List<PhysicalObject> query(PhysicalObject obj) {
+		Proxy proxy = proxies.get(obj);
+		if (proxy == null) {
+			return new ArrayList<>();
+		}
+		update(obj);
+		List<PhysicalObject> ret = query(proxy.bounds);
+		ret.remove(obj);
+		return ret;
+	}
+
+	/**
+	 * Get all objects overlapping a given area, scanning the sorted endpoints up
+	 * to the end of the area.
+	 *
+	 * @param area The area to query.
+	 *
+	 * @return The list of objects overlapping the area.
+	 */
+	public List<PhysicalObject> query(AABB area) {
+		List<PhysicalObject> ret = new ArrayList<>();
+		for (int i = 0; i < numEndpoints && endpoints[i].getValue() < area.maxX; i++) {
+			Endpoint e = endpoints[i];
+			if (e.isMin && e.proxy.bounds.overlaps(area)) {
+				ret.add(e.proxy.object);
+			}
+		}
+		return ret;
+	}
+}
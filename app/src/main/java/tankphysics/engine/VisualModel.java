@@ -5,6 +5,7 @@ import processing.core.PVector;
 
 public abstract class VisualModel implements Component {
 	protected GameObject object;
+	private long handle = HandleAllocator.NONE;
 
 	public void attach(GameObject object) {
 		this.object = object;
@@ -14,6 +15,14 @@ public abstract class VisualModel implements Component {
 		return object;
 	}
 
+	public long getHandle() {
+		return handle;
+	}
+
+	public void setHandle(long handle) {
+		this.handle = handle;
+	}
+
 	/**
 	 * Draw the visual object onto the screen.
 	 *
@@ -0,0 +1,126 @@
+package tankphysics.engine;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+import processing.core.PApplet;
+import processing.core.PVector;
+
+class BroadphaseTest {
+	private static final int NUM_BODIES = 200;
+	private static final int NUM_COLLIDERS = 20;
+	private static final int NUM_STEPS = 30;
+	private static final float WORLD_SIZE = 40;
+
+	@Test
+	void sweepAndPruneMatchesBruteForce() {
+		checkAgainstBruteForce(new SweepAndPrune());
+	}
+
+	@Test
+	void spatialHashGridMatchesBruteForce() {
+		checkAgainstBruteForce(new SpatialHashGrid(2));
+	}
+
+	@Test
+	void dynamicAABBTreeMatchesBruteForce() {
+		checkAgainstBruteForce(new DynamicAABBTree());
+	}
+
+	// Move random bodies around random colliders, removing some of them midway,
+	// and compare the pairs and queries of a broadphase to those found by
+	// checking the bounds of every object.
+	private static void checkAgainstBruteForce(Broadphase broadphase) {
+		Random random = new Random(1);
+		Director director = new Director(new PApplet());
+		ArrayList<RigidBody> bodies = new ArrayList<>();
+		ArrayList<PhysicalObject> objects = new ArrayList<>();
+		for (int i = 0; i < NUM_BODIES; i++) {
+			GameObject object = new GameObject(new PVector(1, 1), randomPosition(random), false);
+			CollisionMesh mesh = new CollisionMesh(new PVector(), Polygons.makeSquare(new PVector(1, 1)), null);
+			RigidBody b = new RigidBody(1, mesh);
+			object.attach(b);
+			director.attach(object);
+			bodies.add(b);
+		}
+		for (int i = 0; i < NUM_COLLIDERS; i++) {
+			PVector size = new PVector(1 + random.nextFloat() * WORLD_SIZE, 2);
+			CollisionMesh mesh = new CollisionMesh(new PVector(), Polygons.makeSquare(size), null);
+			director.attach(new GameObject(size, randomPosition(random), false, mesh));
+			objects.add(mesh);
+		}
+		objects.addAll(bodies);
+		for (PhysicalObject obj : objects) {
+			broadphase.add(obj);
+		}
+
+		for (int step = 0; step < NUM_STEPS; step++) {
+			for (RigidBody b : bodies) {
+				PVector offset = new PVector(random.nextFloat() - 0.5f, random.nextFloat() - 0.5f);
+				b.getObject().setPosition(PVector.add(b.getObject().getPosition(), offset));
+			}
+			if (step == NUM_STEPS / 2) {
+				for (int i = 0; i < NUM_BODIES / 4; i++) {
+					broadphase.remove(bodies.get(i));
+					objects.remove(bodies.get(i));
+				}
+			}
+			broadphase.update();
+
+			HashSet<Set<PhysicalObject>> pairs = new HashSet<>();
+			broadphase.findPairs((a, b) -> assertTrue(pairs.add(Set.of(a, b)), "Pair reported twice"));
+			assertEquals(findPairs(objects), pairs, "Pairs of step " + step);
+
+			RigidBody b = bodies.get(NUM_BODIES - 1 - random.nextInt(NUM_BODIES / 2));
+			HashSet<PhysicalObject> overlapping = query(objects, getBounds(b));
+			overlapping.remove(b);
+			assertEquals(overlapping, new HashSet<>(broadphase.query(b)), "Query of step " + step);
+
+			PVector corner = randomPosition(random);
+			AABB area = new AABB(corner.x, corner.y, corner.x + random.nextFloat() * 10,
+					corner.y + random.nextFloat() * 10);
+			assertEquals(query(objects, area), new HashSet<>(broadphase.query(area)), "Area query of step " + step);
+		}
+	}
+
+	// Find the overlapping pairs with a moving object, by checking every pair.
+	private static HashSet<Set<PhysicalObject>> findPairs(ArrayList<PhysicalObject> objects) {
+		HashSet<Set<PhysicalObject>> pairs = new HashSet<>();
+		for (int i = 0; i < objects.size(); i++) {
+			for (int j = i + 1; j < objects.size(); j++) {
+				PhysicalObject a = objects.get(i), b = objects.get(j);
+				if ((a instanceof RigidBody || b instanceof RigidBody) && getBounds(a).overlaps(getBounds(b))) {
+					pairs.add(Set.of(a, b));
+				}
+			}
+		}
+		return pairs;
+	}
+
+	private static HashSet<PhysicalObject> query(ArrayList<PhysicalObject> objects, AABB area) {
+		HashSet<PhysicalObject> found = new HashSet<>();
+		for (PhysicalObject obj : objects) {
+			if (getBounds(obj).overlaps(area)) {
+				found.add(obj);
+			}
+		}
+		return found;
+	}
+
+	private static AABB getBounds(PhysicalObject obj) {
+		AABB bounds = new AABB();
+		bounds.setFrom(obj);
+		return bounds;
+	}
+
+	private static PVector randomPosition(Random random) {
+		return new PVector(random.nextFloat() * WORLD_SIZE, random.nextFloat() * WORLD_SIZE);
+	}
+}
@@ -0,0 +1,61 @@
+package tankphysics.engine;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import processing.core.PVector;
+
+class CircleCollisionTest {
+	private static final float TOLERANCE = 1e-4f;
+	private static final float RADIUS = 0.5f;
+
+	@Test
+	void circleIsPushedOutOfFace() {
+		CollisionMesh square = square(), circle = circle(1.3f, 0.2f);
+		CollisionDetails details = new CollisionDetails();
+		assertTrue(CollisionMesh.collide(square, circle, square, circle, details));
+		assertEquals(1, details.getNumPoints());
+		assertEquals(1, details.getNormal().x, TOLERANCE);
+		assertEquals(0, details.getNormal().y, TOLERANCE);
+		assertEquals(-0.2f, details.getPenetration(), TOLERANCE);
+		// Halfway between the circle's surface and the face.
+		assertEquals(0.9f, details.getPoint(0).x, TOLERANCE);
+		assertEquals(0.2f, details.getPoint(0).y, TOLERANCE);
+	}
+
+	@Test
+	void circleIsPushedOutOfCorner() {
+		CollisionMesh square = square(), circle = circle(1.3f, 1.3f);
+		CollisionDetails details = new CollisionDetails();
+		assertTrue(CollisionMesh.collide(square, circle, square, circle, details));
+		assertEquals(1, details.getNumPoints());
+		float diagonal = (float) Math.sqrt(0.5);
+		assertEquals(diagonal, details.getNormal().x, TOLERANCE);
+		assertEquals(diagonal, details.getNormal().y, TOLERANCE);
+		assertEquals(0.3f * (float) Math.sqrt(2) - RADIUS, details.getPenetration(), TOLERANCE);
+	}
+
+	@Test
+	void circleNearCornerDoesNotCollide() {
+		// Within the radius of both faces' planes, but further than the radius from
+		// the corner.
+		CollisionMesh square = square(), circle = circle(1.4f, 1.4f);
+		assertFalse(CollisionMesh.collide(square, circle, square, circle, new CollisionDetails()));
+	}
+
+	// Make a 2 by 2 square centered on the origin.
+	private static CollisionMesh square() {
+		CollisionMesh mesh = new CollisionMesh(new PVector(), Polygons.makeSquare(new PVector(2, 2)), null);
+		new GameObject(new PVector(2, 2), new PVector(), false, mesh);
+		return mesh;
+	}
+
+	private static CollisionMesh circle(float x, float y) {
+		CollisionMesh mesh = new CollisionMesh(new PVector(), RADIUS, null);
+		new GameObject(new PVector(RADIUS * 2, RADIUS * 2), new PVector(x, y), false, mesh);
+		return mesh;
+	}
+}
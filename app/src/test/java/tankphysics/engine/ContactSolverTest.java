@@ -0,0 +1,54 @@
+package tankphysics.engine;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+import processing.core.PApplet;
+import processing.core.PVector;
+
+class ContactSolverTest {
+	private static final float TOLERANCE = 1e-3f;
+
+	@Test
+	void stackedBoxesStayResting() {
+		Director director = new Director(new PApplet());
+		// Keep the boxes awake, so they go through the solver on every step.
+		director.setSleepingEnabled(false);
+		CollisionMesh ground = new CollisionMesh(new PVector(), Polygons.makeSquare(new PVector(20, 2)), null);
+		director.attach(new GameObject(new PVector(20, 2), new PVector(0, 1), false, ground));
+		RigidBody lower = addBox(director, -0.5f);
+		RigidBody upper = addBox(director, -1.5f);
+
+		step(director, 1);
+		PVector lowerPosition = lower.getObject().getPosition().copy();
+		PVector upperPosition = upper.getObject().getPosition().copy();
+		step(director, 5);
+
+		for (RigidBody b : new RigidBody[] { lower, upper }) {
+			assertEquals(0, b.getVelocity().mag(), TOLERANCE, "Velocity");
+			assertEquals(0, b.getRotationalVelocity(), TOLERANCE, "Rotational velocity");
+			assertEquals(0, b.getObject().getRotation(), TOLERANCE, "Rotation");
+		}
+		assertEquals(0, PVector.dist(lowerPosition, lower.getObject().getPosition()), TOLERANCE, "Lower box drift");
+		assertEquals(0, PVector.dist(upperPosition, upper.getObject().getPosition()), TOLERANCE, "Upper box drift");
+		// The boxes may only sink into each other and the ground by a little.
+		assertEquals(1, lower.getObject().getPosition().y - upper.getObject().getPosition().y, 0.05f);
+		assertEquals(-0.5f, lower.getObject().getPosition().y, 0.05f);
+	}
+
+	// Attach a unit box resting at a height above the ground.
+	private static RigidBody addBox(Director director, float y) {
+		GameObject object = new GameObject(new PVector(1, 1), new PVector(0, y), false);
+		RigidBody b = new RigidBody(1, new CollisionMesh(new PVector(), Polygons.makeSquare(new PVector(1, 1)), null));
+		object.attach(b);
+		director.attach(object);
+		return b;
+	}
+
+	private static void step(Director director, float seconds) {
+		for (int i = 0; i < seconds / director.getTargetSecondsPerFrame(); i++) {
+			director.update();
+		}
+	}
+}
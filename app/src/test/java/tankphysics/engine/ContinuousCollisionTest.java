@@ -0,0 +1,59 @@
+package tankphysics.engine;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import processing.core.PApplet;
+import processing.core.PVector;
+import tankphysics.Bullet;
+
+class ContinuousCollisionTest {
+	private static final float WALL_WIDTH = 0.1f;
+	private static final float STEP = 0.1f;
+
+	@Test
+	void bulletDoesNotTunnelThroughThinWall() {
+		// Walls at many offsets, so the bullet's steps end at different distances
+		// before them. Each step moves a full intensity bullet much further than the
+		// wall is wide.
+		for (int i = 0; i < 20; i++) {
+			float wallX = 5 + i * 0.037f;
+			Director director = new Director(new PApplet());
+			director.setTargetSecondsPerFrame(STEP);
+			PVector wallSize = new PVector(WALL_WIDTH, 10);
+			CollisionMesh wallMesh = new CollisionMesh(new PVector(), Polygons.makeSquare(wallSize), null);
+			director.attach(new GameObject(wallSize, new PVector(wallX, 0), false, wallMesh));
+			Bullet bullet = new Bullet(new PVector(0, 0), 0, 100);
+			director.attach(bullet);
+			assertTrue(bullet.getRigidBody().getVelocity().x * STEP > 10 * WALL_WIDTH, "Bullet too slow to tunnel");
+
+			for (int step = 0; step < 30; step++) {
+				director.update();
+				assertTrue(bullet.getPosition().x < wallX + WALL_WIDTH / 2,
+						"Bullet past the wall at " + wallX + " on step " + step);
+			}
+		}
+	}
+
+	@Test
+	void bulletHitsWallMovingIntoItsPath() {
+		// The wall starts away from the bullet's path, and moves into it on the same
+		// step as the bullet goes through.
+		Director director = new Director(new PApplet());
+		director.setTargetSecondsPerFrame(STEP);
+		PVector wallSize = new PVector(WALL_WIDTH, 10);
+		GameObject wall = new GameObject(wallSize, new PVector(2, 20), false);
+		RigidBody wallBody = new RigidBody(1000, new CollisionMesh(new PVector(), Polygons.makeSquare(wallSize), null));
+		wall.attach(wallBody);
+		director.attach(wall);
+		wallBody.setVelocity(new PVector(0, -20 / STEP));
+		Bullet bullet = new Bullet(new PVector(0, 0), 0, 100);
+		director.attach(bullet);
+		assertTrue(bullet.getRigidBody().getVelocity().x * STEP > wall.getPosition().x, "Bullet too slow");
+
+		director.update();
+		assertTrue(Math.abs(wall.getPosition().y) < wallSize.y / 2, "Wall not in the bullet's path");
+		assertTrue(bullet.getPosition().x < wall.getPosition().x + WALL_WIDTH / 2, "Bullet past the wall");
+	}
+}
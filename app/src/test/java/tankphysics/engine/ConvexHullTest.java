@@ -0,0 +1,75 @@
+package tankphysics.engine;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import processing.core.PVector;
+
+class ConvexHullTest {
+
+	@Test
+	void hullSkipsCollinearDuplicateAndInnerPoints() {
+		List<PVector> points = makePoints(0, 0, 1, 0, 2, 0, 2, 2, 0, 2, 1, 1, 2, 0, 0, 0, 0, 1);
+		assertPolygon(makePoints(0, 0, 2, 0, 2, 2, 0, 2), Polygons.getConvexHull(points));
+	}
+
+	@Test
+	void hullOfConcavePolygonFillsDent() {
+		List<PVector> points = makePoints(0, 0, 4, 0, 4, 4, 2, 1, 0, 4);
+		assertPolygon(makePoints(0, 0, 4, 0, 4, 4, 0, 4), Polygons.getConvexHull(points));
+	}
+
+	@Test
+	void hullOfCollinearPointsIsSegment() {
+		List<PVector> points = makePoints(1, 1, 0, 0, 2, 2, 1, 1);
+		assertPolygon(makePoints(0, 0, 2, 2), Polygons.getConvexHull(points));
+	}
+
+	@Test
+	void simplifyRemovesCollinearAndDuplicateVertices() {
+		List<PVector> polygon = makePoints(0, 0, 1, 0, 2, 0, 2, 2, 2, 2, 1, 2, 0, 2);
+		assertPolygon(makePoints(0, 0, 2, 0, 2, 2, 0, 2), Polygons.simplifyConvexPolygon(polygon, 16, 0.001f));
+	}
+
+	@Test
+	void simplifyKeepsVertexBudget() {
+		List<PVector> circle = Polygons.getConvexHull(Polygons.makeRegularPolygon(new PVector(2, 2), 32));
+		List<PVector> simplified = Polygons.simplifyConvexPolygon(circle, 8, 0);
+		assertEquals(8, simplified.size());
+		// Only the original vertices are kept, so the result is inside the polygon, and
+		// in the same order, so it stays convex.
+		int last = -1;
+		for (PVector v : simplified) {
+			int index = circle.indexOf(v);
+			assertTrue(index > last, "Vertex " + v + " out of order");
+			last = index;
+		}
+	}
+
+	@Test
+	void simplifyKeepsTriangle() {
+		List<PVector> square = makePoints(0, 0, 2, 0, 2, 2, 0, 2);
+		assertEquals(3, Polygons.simplifyConvexPolygon(square, 16, 10).size());
+	}
+
+	private static void assertPolygon(List<PVector> expected, List<PVector> actual) {
+		assertEquals(expected.size(), actual.size(), "Vertices of " + actual);
+		for (int i = 0; i < expected.size(); i++) {
+			assertEquals(expected.get(i).x, actual.get(i).x, 0, "Vertices of " + actual);
+			assertEquals(expected.get(i).y, actual.get(i).y, 0, "Vertices of " + actual);
+		}
+	}
+
+	private static List<PVector> makePoints(float... coordinates) {
+		List<PVector> points = new ArrayList<>();
+		for (int i = 0; i < coordinates.length; i += 2) {
+			points.add(new PVector(coordinates[i], coordinates[i + 1]));
+		}
+		return points;
+	}
+}
@@ -0,0 +1,105 @@
+package tankphysics.engine;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import processing.core.PVector;
+
+class DistanceQueryTest {
+	private static final float TOLERANCE = 1e-4f;
+
+	@Test
+	void facingSquares() {
+		CollisionMesh a = square(0, 0), b = square(5, 0.5f);
+		DistanceResult result = new DistanceResult();
+		assertEquals(3, CollisionMesh.closestPoints(a, b, null, result), TOLERANCE);
+		assertEquals(1, result.getPointA().x, TOLERANCE);
+		assertEquals(4, result.getPointB().x, TOLERANCE);
+		// Any points facing each other are closest.
+		assertEquals(result.getPointA().y, result.getPointB().y, TOLERANCE);
+		assertTrue(result.getPointA().y >= -0.5f - TOLERANCE && result.getPointA().y <= 1 + TOLERANCE);
+	}
+
+	@Test
+	void cornerToCornerSquares() {
+		CollisionMesh a = square(0, 0), b = square(4, 3);
+		DistanceResult result = new DistanceResult();
+		assertEquals((float) Math.sqrt(5), CollisionMesh.closestPoints(a, b, null, result), TOLERANCE);
+		assertPoint(1, 1, result.getPointA());
+		assertPoint(3, 2, result.getPointB());
+	}
+
+	@Test
+	void squareAndCircle() {
+		DistanceResult result = new DistanceResult();
+		assertEquals(1.5f, CollisionMesh.closestPoints(square(0, 0), circle(3, 0, 0.5f), null, result), TOLERANCE);
+		assertPoint(1, 0, result.getPointA());
+		assertPoint(2.5f, 0, result.getPointB());
+
+		// Off the corner, the closest points lie on the line from the corner to the
+		// circle's center, at a distance of 5 from each other.
+		assertEquals(4, CollisionMesh.closestPoints(square(0, 0), circle(4, 5, 1), null, result), TOLERANCE);
+		assertPoint(1, 1, result.getPointA());
+		assertPoint(3.4f, 4.2f, result.getPointB());
+	}
+
+	@Test
+	void circles() {
+		DistanceResult result = new DistanceResult();
+		assertEquals(2.5f, CollisionMesh.closestPoints(circle(0, 0, 1), circle(0, 4, 0.5f), null, result), TOLERANCE);
+		assertPoint(0, 1, result.getPointA());
+		assertPoint(0, 3.5f, result.getPointB());
+	}
+
+	@Test
+	void squareAndParticle() {
+		DistanceResult result = new DistanceResult();
+		assertEquals(1, CollisionMesh.closestPoints(square(0, 0), particle(2, 0.5f), null, result), TOLERANCE);
+		assertPoint(1, 0.5f, result.getPointA());
+		assertPoint(2, 0.5f, result.getPointB());
+		assertEquals(0, CollisionMesh.distance(square(0, 0), particle(0.5f, 0.5f), null), TOLERANCE);
+	}
+
+	@Test
+	void overlappingMeshes() {
+		assertEquals(0, CollisionMesh.distance(square(0, 0), square(1.5f, 0.5f), null), TOLERANCE);
+		assertTrue(CollisionMesh.overlap(square(0, 0), circle(1.4f, 0, 0.5f), null));
+		assertFalse(CollisionMesh.overlap(square(0, 0), circle(1.6f, 0, 0.5f), null));
+	}
+
+	@Test
+	void cachedSimplexGivesSameDistance() {
+		CollisionMesh a = square(0, 0), b = square(4, 3);
+		SimplexCache cache = new SimplexCache();
+		CollisionMesh.distance(a, b, cache);
+		b.getObject().setPosition(new PVector(4, 4));
+		assertEquals((float) Math.sqrt(8), CollisionMesh.distance(a, b, cache), TOLERANCE);
+	}
+
+	private static void assertPoint(float x, float y, PVector point) {
+		assertEquals(x, point.x, TOLERANCE, "x of " + point);
+		assertEquals(y, point.y, TOLERANCE, "y of " + point);
+	}
+
+	// Make a 2 by 2 square centered on a position.
+	private static CollisionMesh square(float x, float y) {
+		CollisionMesh mesh = new CollisionMesh(new PVector(), Polygons.makeSquare(new PVector(2, 2)), null);
+		new GameObject(new PVector(2, 2), new PVector(x, y), false, mesh);
+		return mesh;
+	}
+
+	private static CollisionMesh circle(float x, float y, float radius) {
+		CollisionMesh mesh = new CollisionMesh(new PVector(), radius, null);
+		new GameObject(new PVector(radius * 2, radius * 2), new PVector(x, y), false, mesh);
+		return mesh;
+	}
+
+	private static CollisionMesh particle(float x, float y) {
+		CollisionMesh mesh = new CollisionMesh(null);
+		new GameObject(new PVector(), new PVector(x, y), false, mesh);
+		return mesh;
+	}
+}
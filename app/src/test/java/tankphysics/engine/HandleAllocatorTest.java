@@ -0,0 +1,56 @@
+package tankphysics.engine;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+class HandleAllocatorTest {
+
+	@Test
+	void freedHandlesAreStale() {
+		HandleAllocator<String> allocator = new HandleAllocator<>(4);
+		String value = "a";
+		long handle = allocator.allocate(value);
+		assertTrue(allocator.isValid(handle));
+		assertSame(value, allocator.get(handle));
+
+		assertSame(value, allocator.free(handle));
+		assertFalse(allocator.isValid(handle));
+		assertNull(allocator.get(handle));
+		assertNull(allocator.free(handle));
+	}
+
+	@Test
+	void reusedSlotsRejectOldGenerations() {
+		HandleAllocator<String> allocator = new HandleAllocator<>(4);
+		long oldHandle = allocator.allocate("a");
+		allocator.free(oldHandle);
+		long newHandle = allocator.allocate("b");
+
+		assertEquals(HandleAllocator.getIndex(oldHandle), HandleAllocator.getIndex(newHandle));
+		assertNotEquals(HandleAllocator.getGeneration(oldHandle), HandleAllocator.getGeneration(newHandle));
+		assertNull(allocator.get(oldHandle));
+		assertNull(allocator.free(oldHandle));
+		assertEquals("b", allocator.get(newHandle));
+	}
+
+	@Test
+	void allocatorGrows() {
+		HandleAllocator<Integer> allocator = new HandleAllocator<>(1);
+		long[] handles = new long[100];
+		for (int i = 0; i < handles.length; i++) {
+			handles[i] = allocator.allocate(i);
+		}
+		assertEquals(handles.length, allocator.getCapacity());
+		for (int i = 0; i < handles.length; i++) {
+			assertEquals(i, allocator.get(handles[i]).intValue());
+			assertEquals(i, allocator.getAt(HandleAllocator.getIndex(handles[i])).intValue());
+		}
+		assertFalse(allocator.isValid(HandleAllocator.NONE));
+	}
+}
@@ -0,0 +1,50 @@
+package tankphysics.engine;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class LongIntMapTest {
+
+	@Test
+	void negativeKeysAreStored() {
+		LongIntMap map = new LongIntMap();
+		map.put(-1, 3);
+		map.put(0, 4);
+		assertEquals(3, map.get(-1));
+		assertEquals(4, map.get(0));
+		assertEquals(3, map.remove(-1));
+		assertEquals(-1, map.get(-1));
+		assertEquals(1, map.size());
+	}
+
+	@Test
+	void matchesHashMap() {
+		Random random = new Random(1);
+		LongIntMap map = new LongIntMap();
+		HashMap<Long, Integer> expected = new HashMap<>();
+		for (int i = 0; i < 100000; i++) {
+			// Few distinct keys, so removals often shift back colliding entries.
+			long key = (long) (random.nextInt(64) - 32) << 32 | (random.nextInt(64) - 32 & 0xFFFFFFFFL);
+			int operation = random.nextInt(3);
+			if (operation == 0) {
+				int value = random.nextInt(1000);
+				map.put(key, value);
+				expected.put(key, value);
+			} else if (operation == 1) {
+				assertEquals(expected.getOrDefault(key, -1).intValue(), map.remove(key));
+				expected.remove(key);
+			} else {
+				assertEquals(expected.getOrDefault(key, -1).intValue(), map.get(key));
+			}
+			assertEquals(expected.size(), map.size());
+		}
+		for (Map.Entry<Long, Integer> entry : expected.entrySet()) {
+			assertEquals(entry.getValue().intValue(), map.get(entry.getKey()));
+		}
+	}
+}
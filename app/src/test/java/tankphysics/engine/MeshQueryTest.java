@@ -0,0 +1,79 @@
+package tankphysics.engine;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import processing.core.PVector;
+
+class MeshQueryTest {
+	private static final int GRID_SIZE = 4;
+
+	@Test
+	void queryMatchesBruteForceAfterTurning() {
+		CollisionMesh[] meshes = makeGrid();
+		GameObject object = new GameObject(new PVector(GRID_SIZE, GRID_SIZE), new PVector(), false);
+		RigidBody b = new RigidBody(1, meshes);
+		object.attach(b);
+
+		Random random = new Random(1);
+		for (int step = 0; step < 200; step++) {
+			object.setPosition(new PVector(random.nextFloat() * 4 - 2, random.nextFloat() * 4 - 2));
+			if (step % 4 == 0) {
+				object.setRotation(random.nextFloat() * 2 * (float) Math.PI);
+			}
+			checkQuery(b, meshes, random, 2, "Meshes of step " + step);
+		}
+	}
+
+	@Test
+	void queryMatchesBruteForceOnTurnedObject() {
+		// Meshes attached to a turned object are turned with it.
+		CollisionMesh[] meshes = makeGrid();
+		GameObject object = new GameObject(new PVector(GRID_SIZE, GRID_SIZE), new PVector(), false);
+		object.setRotation(1);
+		RigidBody b = new RigidBody(1, meshes);
+		object.attach(b);
+
+		Random random = new Random(1);
+		for (int step = 0; step < 200; step++) {
+			checkQuery(b, meshes, random, 0.5f, "Meshes of step " + step);
+		}
+	}
+
+	// A grid of small squares, enough for the body to query them through a tree.
+	private static CollisionMesh[] makeGrid() {
+		CollisionMesh[] meshes = new CollisionMesh[GRID_SIZE * GRID_SIZE];
+		for (int i = 0; i < meshes.length; i++) {
+			PVector offset = new PVector(i % GRID_SIZE - 1.5f, i / GRID_SIZE - 1.5f);
+			List<PVector> square = new ArrayList<>();
+			for (PVector v : Polygons.makeSquare(new PVector(0.5f, 0.5f))) {
+				square.add(PVector.add(v, offset));
+			}
+			meshes[i] = new CollisionMesh(new PVector(), square, null);
+		}
+		return meshes;
+	}
+
+	// Query a random area, and compare the meshes found to those whose bounds
+	// overlap the area.
+	private static void checkQuery(RigidBody b, CollisionMesh[] meshes, Random random, float maxSize,
+			String message) {
+		float x = random.nextFloat() * 8 - 4, y = random.nextFloat() * 8 - 4;
+		AABB area = new AABB(x, y, x + random.nextFloat() * maxSize, y + random.nextFloat() * maxSize);
+
+		List<CollisionMesh> expected = new ArrayList<>();
+		for (CollisionMesh mesh : meshes) {
+			if (mesh.getBounds().overlaps(area)) {
+				expected.add(mesh);
+			}
+		}
+		List<CollisionMesh> found = new ArrayList<>();
+		b.queryMeshes(area, found);
+		assertEquals(expected, found, message);
+	}
+}
@@ -0,0 +1,65 @@
+package tankphysics.engine;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.HashMap;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class PairTableTest {
+
+	@Test
+	void pairsAreUnordered() {
+		PairTable<String> table = new PairTable<>();
+		table.put(3, 7, "a");
+		assertEquals("a", table.get(7, 3));
+		table.put(7, 3, "b");
+		assertEquals("b", table.get(3, 7));
+		assertEquals(1, table.size());
+		assertNull(table.get(3, 8));
+	}
+
+	@Test
+	void entriesSurviveRemovals() {
+		// Enough entries to grow the table several times, half of them removed, so
+		// entries are shifted back into the holes.
+		PairTable<Integer> table = new PairTable<>();
+		for (int i = 0; i < 1000; i++) {
+			table.put(i, i + 1, i);
+		}
+		table.removeIf((v) -> v % 2 == 0);
+		assertEquals(500, table.size());
+		for (int i = 0; i < 1000; i++) {
+			assertEquals(i % 2 == 0 ? null : (Integer) i, table.get(i + 1, i));
+		}
+		int[] count = { 0 };
+		table.forEach((v) -> count[0]++);
+		assertEquals(500, count[0]);
+	}
+
+	@Test
+	void matchesHashMap() {
+		Random random = new Random(1);
+		PairTable<Integer> table = new PairTable<>();
+		HashMap<Long, Integer> expected = new HashMap<>();
+		for (int i = 0; i < 100000; i++) {
+			int idA = random.nextInt(300), idB = random.nextInt(300);
+			long key = (long) Math.min(idA, idB) << 32 | Math.max(idA, idB);
+			int operation = random.nextInt(10);
+			if (operation < 5) {
+				int value = random.nextInt(1000);
+				table.put(idA, idB, value);
+				expected.put(key, value);
+			} else if (operation < 9) {
+				assertEquals(expected.get(key), table.get(idB, idA));
+			} else {
+				int removed = random.nextInt(97);
+				table.removeIf((v) -> v % 97 == removed);
+				expected.values().removeIf((v) -> v % 97 == removed);
+			}
+			assertEquals(expected.size(), table.size());
+		}
+	}
+}
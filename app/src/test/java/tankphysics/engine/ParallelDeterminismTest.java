@@ -0,0 +1,99 @@
+package tankphysics.engine;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.jupiter.api.Test;
+
+import processing.core.PApplet;
+import processing.core.PVector;
+
+class ParallelDeterminismTest {
+	private static final int NUM_COLUMNS = 40;
+	private static final int COLUMN_HEIGHT = 4;
+	private static final int WALL_WIDTH = 10;
+	private static final int WALL_HEIGHT = 8;
+	private static final int NUM_STEPS = 300;
+
+	@Test
+	void parallelIslandsMatchSerial() {
+		checkParallelMatchesSerial(false);
+	}
+
+	// Coloring changes the order contacts are solved in, so colored results are
+	// only compared to colored results.
+	@Test
+	void parallelColorsMatchSerial() {
+		checkParallelMatchesSerial(true);
+	}
+
+	private static void checkParallelMatchesSerial(boolean graphColoring) {
+		ForkJoinPool pool = new ForkJoinPool(4);
+		try {
+			float[] serial = simulate(null, graphColoring);
+			float[] parallel = simulate(pool, graphColoring);
+			for (int i = 0; i < serial.length; i++) {
+				assertEquals(Float.floatToIntBits(serial[i]), Float.floatToIntBits(parallel[i]), "State " + i);
+			}
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	// Step columns of jittered boxes, each column its own island, and a wall of
+	// boxes large enough to be colored, then get the positions, rotations and
+	// velocities of the boxes at the end. The boxes start touching, so every island
+	// is solved from the first step. There are enough pairs for their contacts to
+	// be computed in parallel too, when given a pool.
+	private static float[] simulate(ForkJoinPool pool, boolean graphColoring) {
+		Director director = new Director(new PApplet());
+		director.setSolverPool(pool);
+		director.setGraphColoring(graphColoring);
+		// Keep the islands awake, so they are all solved on every step.
+		director.setSleepingEnabled(false);
+		float width = NUM_COLUMNS * 3 + WALL_WIDTH + 2;
+		CollisionMesh ground = new CollisionMesh(new PVector(), Polygons.makeSquare(new PVector(width, 2)), null);
+		director.attach(new GameObject(new PVector(width, 2), new PVector(width / 2, 1), false, ground));
+
+		Random random = new Random(1);
+		ArrayList<RigidBody> bodies = new ArrayList<>();
+		for (int i = 0; i < NUM_COLUMNS; i++) {
+			for (int j = 0; j < COLUMN_HEIGHT; j++) {
+				RigidBody b = addBox(director, i * 3 + 1.5f + random.nextFloat() * 0.4f, -0.5f - j);
+				b.setVelocity(new PVector(random.nextFloat() - 0.5f, 0));
+				bodies.add(b);
+			}
+		}
+		for (int i = 0; i < WALL_WIDTH; i++) {
+			for (int j = 0; j < WALL_HEIGHT; j++) {
+				bodies.add(addBox(director, NUM_COLUMNS * 3 + 1.5f + i, -0.5f - j));
+			}
+		}
+		for (int i = 0; i < NUM_STEPS; i++) {
+			director.update();
+		}
+
+		float[] state = new float[bodies.size() * 6];
+		for (int i = 0; i < bodies.size(); i++) {
+			RigidBody b = bodies.get(i);
+			state[i * 6] = b.getObject().getPosition().x;
+			state[i * 6 + 1] = b.getObject().getPosition().y;
+			state[i * 6 + 2] = b.getObject().getRotation();
+			state[i * 6 + 3] = b.getVelocity().x;
+			state[i * 6 + 4] = b.getVelocity().y;
+			state[i * 6 + 5] = b.getRotationalVelocity();
+		}
+		return state;
+	}
+
+	private static RigidBody addBox(Director director, float x, float y) {
+		GameObject object = new GameObject(new PVector(1, 1), new PVector(x, y), false);
+		RigidBody b = new RigidBody(1, new CollisionMesh(new PVector(), Polygons.makeSquare(new PVector(1, 1)), null));
+		object.attach(b);
+		director.attach(object);
+		return b;
+	}
+}
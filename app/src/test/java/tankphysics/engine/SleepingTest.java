@@ -0,0 +1,81 @@
+package tankphysics.engine;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import processing.core.PApplet;
+import processing.core.PVector;
+
+class SleepingTest {
+	private static final float TOLERANCE = 1e-3f;
+
+	@Test
+	void restingIslandFallsAsleep() {
+		Director director = makeGround();
+		RigidBody lower = addBox(director, -0.5f), upper = addBox(director, -1.5f);
+		step(director, 2);
+		assertFalse(lower.isAwake(), "Lower box awake");
+		assertFalse(upper.isAwake(), "Upper box awake");
+
+		PVector position = upper.getObject().getPosition().copy();
+		step(director, 1);
+		assertEquals(0, PVector.dist(position, upper.getObject().getPosition()), TOLERANCE, "Sleeping box moved");
+	}
+
+	@Test
+	void forceWakesWholeIsland() {
+		Director director = makeGround();
+		RigidBody lower = addBox(director, -0.5f), upper = addBox(director, -1.5f);
+		step(director, 2);
+
+		director.addForce(upper, new Force(new PVector(-1, 0), false, true));
+		assertTrue(upper.isAwake(), "Pushed box asleep");
+		director.update();
+		assertTrue(lower.isAwake(), "Box touching the pushed box asleep");
+		assertTrue(upper.getObject().getPosition().x < 0, "Pushed box did not move");
+	}
+
+	@Test
+	void contactWakesIsland() {
+		Director director = makeGround();
+		RigidBody lower = addBox(director, -0.5f), upper = addBox(director, -1.5f);
+		step(director, 2);
+
+		RigidBody falling = addBox(director, -4);
+		boolean woken = false;
+		for (int i = 0; i < 1 / director.getTargetSecondsPerFrame(); i++) {
+			director.update();
+			woken = woken || lower.isAwake() && upper.isAwake();
+		}
+		assertTrue(woken, "Island not woken by the falling box");
+		// The falling box lands on the stack rather than going through it.
+		step(director, 2);
+		assertEquals(-2.5f, falling.getObject().getPosition().y, 0.05f);
+		assertEquals(-1.5f, upper.getObject().getPosition().y, 0.05f);
+	}
+
+	private static Director makeGround() {
+		Director director = new Director(new PApplet());
+		CollisionMesh ground = new CollisionMesh(new PVector(), Polygons.makeSquare(new PVector(20, 2)), null);
+		director.attach(new GameObject(new PVector(20, 2), new PVector(0, 1), false, ground));
+		return director;
+	}
+
+	// Attach a unit box at a height above the ground.
+	private static RigidBody addBox(Director director, float y) {
+		GameObject object = new GameObject(new PVector(1, 1), new PVector(0, y), false);
+		RigidBody b = new RigidBody(1, new CollisionMesh(new PVector(), Polygons.makeSquare(new PVector(1, 1)), null));
+		object.attach(b);
+		director.attach(object);
+		return b;
+	}
+
+	private static void step(Director director, float seconds) {
+		for (int i = 0; i < seconds / director.getTargetSecondsPerFrame(); i++) {
+			director.update();
+		}
+	}
+}